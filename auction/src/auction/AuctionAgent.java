@@ -1,10 +1,17 @@
 package auction;
 
+import java.io.Closeable;
 import java.io.File;
 //the list of imports
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import common.Solution;
 import logist.LogistSettings;
 import logist.behavior.AuctionBehavior;
 import logist.config.Parsers;
@@ -20,8 +27,10 @@ import logist.topology.Topology.City;
 /**
  * An auction agent
  * 
+ * Closeable so that whoever plays many games in the same JVM (like tools.AuctionSimulator) can stop its threads,
+ * the platform never calls close
  */
-public class AuctionAgent implements AuctionBehavior {
+public class AuctionAgent implements AuctionBehavior, Closeable {
 
 	private ArrayList<Task> tasks;
 	private ArrayList<Task> opponentTasks;
@@ -39,16 +48,22 @@ public class AuctionAgent implements AuctionBehavior {
 	private int nbrVehicles;
 	private List<City> cities;
 	private int avgCostPerKm = 0;
+	private int oppCostPerKm = 0; // the guessed cost per km of the opponent's vehicles
 	private double oppComputedBid;
 	private int nbrIter = 10;
 	private int bidGain1 = 0;
 	private int bidGain2 = 750;
 	private int ennemyPredictedGain = 500;
+	private double ennemyGainUpdate = 0.7; // update factor of the exponential averaging of ennemyPredictedGain
+	private ExecutorService executor; // runs the search for the opponent while we search for ourselves
+	private OpponentModel opponentModel; // posterior over the home cities and the cost per km of the opponent's vehicles
+	private SearchBudget searchBudget; // splits the bid time between our search and the opponent's one
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution,
 			Agent agent) {
 
+		long start = System.currentTimeMillis();
 		this.tasks = new ArrayList<Task>();
 		this.opponentTasks = new ArrayList<Task>();
 		this.agent = agent;
@@ -63,8 +78,25 @@ public class AuctionAgent implements AuctionBehavior {
 			avgCostPerKm += vehicle.costPerKm();
 		}
 		avgCostPerKm /= nbrVehicles;
+		this.opponentModel = new OpponentModel(cities, 2 * avgCostPerKm, agent.readProperty("opponent-max-gain", Double.class, 1500.),
+				agent.readProperty("opponent-gains", Integer.class, 7), agent.readProperty("opponent-noise", Double.class, 300.),
+				agent.readProperty("opponent-closer-vehicle", Double.class, 0.5));
+		bidGain1 = agent.readProperty("bid-gain-begin", Integer.class, bidGain1);
+		bidGain2 = agent.readProperty("bid-gain-end", Integer.class, bidGain2);
+		ennemyPredictedGain = agent.readProperty("opponent-predicted-gain", Integer.class, ennemyPredictedGain);
+		ennemyGainUpdate = agent.readProperty("opponent-gain-update", Double.class, ennemyGainUpdate);
+		searchBudget = new SearchBudget(agent.readProperty("min-search-share", Double.class, 0.3),
+				agent.readProperty("volatility-update", Double.class, 0.3));
 				
 		this.oppStartCities = new ArrayList<Integer>();
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "opponent-search");
+				thread.setDaemon(true);  // must not keep the platform alive once the game is over
+				return thread;
+			}
+		});
 		
 		for(Vehicle vehicle: agent.vehicles()) {
 			if (vehicle.capacity() > maxVehicleCapacity) {
@@ -74,7 +106,7 @@ public class AuctionAgent implements AuctionBehavior {
 		
 		LogistSettings ls = null;
         try {
-            ls = Parsers.parseSettings("config" + File.separator + "settings_auction.xml");
+            ls = Parsers.parseSettings(agent.readProperty("settings", String.class, "config" + File.separator + "settings_auction.xml"));
         }
         catch (Exception exc) {
             System.out.println("There was a problem loading the configuration file.");
@@ -84,6 +116,9 @@ public class AuctionAgent implements AuctionBehavior {
         this.planTimeLimit = ls.get(LogistSettings.TimeoutKey.PLAN);
         // the bid method cannot execute more than bidTimeLimit milliseconds
         this.bidTimeLimit = ls.get(LogistSettings.TimeoutKey.BID);
+
+        // runs the searches on synthetic problems so that the JIT compiled them before the first bid
+        mlc.warmUp(topology.cities(), agent.vehicles(), start, ls.get(LogistSettings.TimeoutKey.SETUP));
 	}
 
 	@Override
@@ -93,46 +128,29 @@ public class AuctionAgent implements AuctionBehavior {
 			System.out.println("We predicted " + oppComputedBid + ", Opponent played " + oppBid);
 		}
 		
-		boolean addedCityOpponent = false;
+		boolean addedCityOpponent = false, opponentChanged = false;
 		
-		if (opponentTasks.size() == 1 && oppStartCities.size() < nbrVehicles) {  // we will try to refine our estimation of the opponent base city
-			// if he hasn't carried any tasks yet (opponentTasks.size() == 1) and we haven't found all of its vehicles (assuming he has as much as we do)
-			if (oppBid != null) {
-				double bestCityScores = Double.MAX_VALUE, currentCityScore;
-				int bestCityIndex = 0;
-				double taskDistance = previous.pickupCity.distanceTo(previous.deliveryCity);
-				
-				for (int i=0; i < cities.size(); i++) {
-					currentCityScore = Math.abs(oppBid - avgCostPerKm * (cities.get(i).distanceTo(previous.pickupCity) + taskDistance) - ennemyPredictedGain);
-					// the closest to zero, the more likely it is the adversary came from that city, assuming the adversary took no benefit
-					if (currentCityScore < bestCityScores) {
-						bestCityScores = currentCityScore;
-						bestCityIndex = i; // assuming min is unique
-					}
-				}
-								
-				boolean alreadyIn = false; // done instead of a set since size is smaller than 5
-				for (int city: oppStartCities) {
-					if (city == bestCityIndex) {
-						alreadyIn = true;
-						break;
-					}
-				}
-				if (!alreadyIn) {
-					oppStartCities.add(bestCityIndex);
-					mlc.updateOpponent(oppStartCities, maxVehicleCapacity, avgCostPerKm, cities);
-				}
+		if (oppBid != null) {  // we refine our estimation of the opponent's vehicles with his bid
+			opponentModel.update(previous, oppBid, opponentTasks.subList(0, opponentTasks.size()-1));
+			ArrayList<Integer> mostProbableCities = opponentModel.mostProbableCities(nbrVehicles);
+			int oppCostPerKm = opponentModel.mostProbableCostPerKm();
+			addedCityOpponent = !oppStartCities.containsAll(mostProbableCities);
+			if (addedCityOpponent || oppCostPerKm != this.oppCostPerKm) {
+				oppStartCities = mostProbableCities;
+				this.oppCostPerKm = oppCostPerKm;
+				mlc.updateOpponent(oppStartCities, maxVehicleCapacity, oppCostPerKm, cities);
+				opponentChanged = true;
+				tryToPredictOpponent = true;  // the new vehicles get a new chance
 			}
 		}
 		
-		if (tryToPredictOpponent && oppComputedBid != 0 && !addedCityOpponent) { // if we tried to compute a bid and if our bid wasn't 
-			// wrong because it came from a city we hadn't previously encountered
+		if (tryToPredictOpponent && oppComputedBid != 0 && oppBid != null && !opponentChanged) { // if we tried to compute a
+			// bid for this auction and if it wasn't wrong because it came from vehicles we have just changed
 			if (Math.abs(oppComputedBid - oppBid) > 500) { // in that case, our city estimation is probably wrong and we should drop it
 				tryToPredictOpponent = false;
 				System.out.println("We won't try to predict his moves anymore");
 			} else {
-				double upDateFactor = 0.7;
-				ennemyPredictedGain = ennemyPredictedGain + (int) (upDateFactor*(oppBid - oppComputedBid)); // exponential averaging
+				ennemyPredictedGain = ennemyPredictedGain + (int) (ennemyGainUpdate*(oppBid - oppComputedBid)); // exponential averaging
 			}
 		}
 
@@ -140,36 +158,70 @@ public class AuctionAgent implements AuctionBehavior {
 			prevSol = newSolWithTask;
 			opponentTasks.remove(opponentTasks.size()-1); // we remove the task from the 
 			// task set since it will not deliver it
+			if (tryToPredictOpponent && oppStartCities.size() > 0) {
+				prevOppSol = cheapestWithoutTask(prevOppSol, opponentTasks, false);
+			}
 		} else {
 			prevOppSol = newOppSolWithTask;
 			tasks.remove(tasks.size()-1);
+			prevSol = cheapestWithoutTask(prevSol, tasks, true);
+		}
+		if (opponentChanged) {  // the opponent's solutions were computed for other vehicles
+			prevOppSol = (opponentTasks.isEmpty()) ? null : mlc.getSolution(opponentTasks, 0, false);
 		}
 	}
 	
+	/*
+	 * once a task is lost, the solution we computed with it minus that task (the mlc just removes it, no search is made)
+	 * may be cheaper than the solution we had before, return the cheapest of both
+	 */
+	private Solution cheapestWithoutTask(Solution previousSolution, ArrayList<Task> remainingTasks, boolean forOurAgent) {
+		Solution withoutTask = mlc.getSolution(remainingTasks, 0, forOurAgent);
+		if (previousSolution == null || withoutTask.getCost() < previousSolution.getCost()) {
+			return withoutTask;
+		}
+		return previousSolution;
+	}
+	
 	@Override
 	public Long askPrice(Task task) {
+		mlc.setTelemetryPhase("bid " + task.id);
+		mlc.setStopOnPlateau(true);
+		oppComputedBid = 0;  // until we predict the opponent's bid for this auction
 		if (task.weight > maxVehicleCapacity) {
 			return null;
 		}
-		double prevCost = (prevSol == null) ? 0 : prevSol.cost, bid = 0;
+		double prevCost = (prevSol == null) ? 0 : prevSol.getCost(), bid = 0;
 		long currentTime = System.currentTimeMillis();
 		
 		tasks.add(task);  // we add it no matter what and will remove it if we don't get the task
 		opponentTasks.add(task);
 		
 		if (tryToPredictOpponent && oppStartCities.size() > 0) { // we try to predict the opponents moves
-			double prevOppCost = (prevOppSol == null) ? 0 : prevOppSol.cost;
-			double fracTime =  ((double) tasks.size()) / (opponentTasks.size() + tasks.size()) * bidTimeLimit;
-			long timeOut1 = currentTime + (long) fracTime;
-			long timeOut2 = currentTime + bidTimeLimit - 50;
+			double prevOppCost = (prevOppSol == null) ? 0 : prevOppSol.getCost();
+			final long oppTimeOut = searchBudget.timeLimit(false, currentTime, mlc.searchTime(bidTimeLimit));
 			
-			newSolWithTask = mlc.getSolution(tasks, timeOut1, true);
+			// both searches run at the same time, the opponent's one on the executor, with their share of the bid time
+			Future<Solution> oppSearch = executor.submit(new Callable<Solution>() {
+				@Override
+				public Solution call() {
+					return mlc.getSolution(opponentTasks, oppTimeOut, false);
+				}
+			});
+			newSolWithTask = mlc.getSolution(tasks, searchBudget.timeLimit(true, currentTime, mlc.searchTime(bidTimeLimit)), true);
+			searchBudget.record(true, mlc.getLastGain(true));
 			double frac = ((double) tasks.size()) / nbrIter;
 			double bidGain = (frac > 1) ?  bidGain2 : bidGain1*(1.-frac) + bidGain2*frac;
-			double dummyBid = Math.max(1, newSolWithTask.cost - prevCost) + bidGain;
+			double dummyBid = Math.max(1, newSolWithTask.getCost() - prevCost) + bidGain;
 			
-			newOppSolWithTask = mlc.getSolution(opponentTasks, timeOut2, false);
-			oppComputedBid = Math.max(1, newOppSolWithTask.cost - prevOppCost + ennemyPredictedGain);
+			try {
+				newOppSolWithTask = oppSearch.get();
+				searchBudget.record(false, mlc.getLastGain(false));
+			} catch (Exception e) {  // interrupted or the search threw
+				e.printStackTrace();
+				newOppSolWithTask = mlc.getSolution(opponentTasks, 0, false); // the tasks are inserted without search
+			}
+			oppComputedBid = Math.max(1, newOppSolWithTask.getCost() - prevOppCost + ennemyPredictedGain);
 			
 			if ((oppComputedBid < dummyBid) && (oppComputedBid > dummyBid - 1000)) {
 				bid = oppComputedBid - 150;
@@ -177,12 +229,12 @@ public class AuctionAgent implements AuctionBehavior {
 				bid = dummyBid;
 			}
 		} else {
-			long timeOut = currentTime + bidTimeLimit - 35;
+			long timeOut = currentTime + mlc.searchTime(bidTimeLimit);
 			newSolWithTask = mlc.getSolution(tasks, timeOut, true);
 
 			double frac = ((double) tasks.size()) / nbrIter;
 			double bidGain = (frac > 1) ?  bidGain2 : bidGain1*(1.-frac) + bidGain2*frac;
-			bid = Math.max(1, newSolWithTask.cost - prevCost) + bidGain;
+			bid = Math.max(1, newSolWithTask.getCost() - prevCost) + bidGain;
 			
 		}
 		return (long) Math.round(bid);
@@ -191,12 +243,14 @@ public class AuctionAgent implements AuctionBehavior {
 
 	@Override
 	public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
+		mlc.setTelemetryPhase("plan");
+		mlc.setStopOnPlateau(false);
 		System.out.println("the ennemy predicted cities were");
 		for (int i = 0; i < oppStartCities.size(); i++) {
 			System.out.println(cities.get(oppStartCities.get(i)));
 		}
 		
-		long timeOut = System.currentTimeMillis() + planTimeLimit - 40;
+		long timeOut = System.currentTimeMillis() + mlc.searchTime(planTimeLimit);
 		
 		ArrayList<Task> list = new ArrayList<Task>();
         for (Task task: tasks) {
@@ -205,4 +259,10 @@ public class AuctionAgent implements AuctionBehavior {
 		Solution newSol = mlc.getSolution(list, timeOut, true);
 		return newSol.getPlans(list);
 	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		mlc.shutdown();
+	}
 }
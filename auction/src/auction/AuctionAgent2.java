@@ -1,14 +1,12 @@
 package auction;
 
+import java.io.Closeable;
 import java.io.File;
 //the list of imports
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
+import common.Solution;
 import logist.LogistSettings;
 import logist.behavior.AuctionBehavior;
 import logist.config.Parsers;
@@ -19,17 +17,17 @@ import logist.task.Task;
 import logist.task.TaskDistribution;
 import logist.task.TaskSet;
 import logist.topology.Topology;
-import logist.topology.Topology.City;
 
 /**
  * An auction agent
  * 
+ * Closeable so that whoever plays many games in the same JVM (like tools.AuctionSimulator) can stop its threads,
+ * the platform never calls close
  */
-public class AuctionAgent2 implements AuctionBehavior {
+public class AuctionAgent2 implements AuctionBehavior, Closeable {
 
 	private TaskDistribution distribution;
 	private ArrayList<Task> tasks;
-	private ArrayList<Task> tasks_lost;
 	private Agent agent;
 	private MarginalLossComputer mlc;
 	private Solution prevSol;
@@ -37,23 +35,23 @@ public class AuctionAgent2 implements AuctionBehavior {
 	private long planTimeLimit;
 	private long bidTimeLimit;
 	private int maxVehicleCapacity = 0; //Capacity of the largest vehicle of the agent
-	private List<Long[]> bidHistory;  // List of array containing the history of the bids
-	private List<Integer> winners;
+	private BidHistory bidHistory;  // the bids and the winners of the last auctions
+	private EdgeCoverage lostLinks;  // the links covered by the paths of the tasks we lost
 	private List<Task>[] task_distr;
-	// our bids are put at the first position
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution,
 			Agent agent) {
 
+		long start = System.currentTimeMillis();
 		this.distribution = distribution;
 		this.tasks = new ArrayList<Task>();
+		this.lostLinks = new EdgeCoverage(topology);
 		this.agent = agent;
 		this.mlc = new MarginalLossComputer(agent);
 		this.prevSol = null;
 		this.newSolWithTask = null;
-		this.bidHistory = new ArrayList<Long[]>();
-		this.winners = new ArrayList<Integer>();
+		this.bidHistory = new BidHistory(agent.id(), agent.readProperty("history-size", Integer.class, 1000));
 		for(Vehicle vehicle: agent.vehicles()) {
 			if (vehicle.capacity() > maxVehicleCapacity) {
 				maxVehicleCapacity = vehicle.capacity();
@@ -62,7 +60,7 @@ public class AuctionAgent2 implements AuctionBehavior {
 		
 		LogistSettings ls = null;
         try {
-            ls = Parsers.parseSettings("config" + File.separator + "settings_auction.xml");
+            ls = Parsers.parseSettings(agent.readProperty("settings", String.class, "config" + File.separator + "settings_auction.xml"));
         }
         catch (Exception exc) {
             System.out.println("There was a problem loading the configuration file.");
@@ -72,46 +70,45 @@ public class AuctionAgent2 implements AuctionBehavior {
         this.planTimeLimit = ls.get(LogistSettings.TimeoutKey.PLAN);
         // the bid method cannot execute more than bidTimeLimit milliseconds
         this.bidTimeLimit = ls.get(LogistSettings.TimeoutKey.BID);
+
+        // runs the searches on synthetic problems so that the JIT compiled them before the first bid
+        mlc.warmUp(topology.cities(), agent.vehicles(), start, ls.get(LogistSettings.TimeoutKey.SETUP));
 	}
 
 	@Override
 	public void auctionResult(Task previous, int winner, Long[] bids) {
-		// we put our bid in the first position
-		Long[] bidsCopy = bids.clone();
-		bidsCopy[agent.id()] = bids[0];
-		bidsCopy[0] = bids[agent.id()];
-		bidHistory.add(bidsCopy);
-		winners.add(winner);
+		bidHistory.add(bids, winner);
 		
 		if (winner == agent.id()) {
 			this.prevSol = this.newSolWithTask;
 		} else {
 			this.tasks.remove(tasks.size()-1);  // we remove the task from our 
 			// task set since we will not deliver it
-			tasks_lost.add(previous);
+			lostLinks.cover(previous);
 		}
 	}
 	
 	@Override
 	public Long askPrice(Task task) {
+		mlc.setTelemetryPhase("bid " + task.id);
+		mlc.setStopOnPlateau(true);
 		
 		if (task.weight > maxVehicleCapacity) {
 			return null;
 		}
-		double prevCost = (prevSol == null) ? 0 : prevSol.cost;
+		double prevCost = (prevSol == null) ? 0 : prevSol.getCost();
 		
 		this.tasks.add(task);  // we add it no matter what and will remove it if we don't get the task
-		long timeOut = System.currentTimeMillis() + (long) (0.999*bidTimeLimit) - 5;
-		// 0.999 for safety + 5ms for the rest of the method
+		long timeOut = System.currentTimeMillis() + mlc.searchTime(bidTimeLimit);
 		this.newSolWithTask = mlc.getSolution(this.tasks, timeOut, true);
 		
 		// TODO: add time adaptability
 		// TODO: add adaptation to ennemy
 		// TODO; si on a un cout < 0, on peut suremnt le mettre à 0 comme c'est task specific
 
-		double bid = newSolWithTask.cost - prevCost;
+		double bid = newSolWithTask.getCost() - prevCost;
 		
-		double est_opponent = lengthNewLinks(tasks_lost, task);
+		double est_opponent = lengthNewLinks(task);
 		
 		if (bid <= est_opponent) {
 			bid = est_opponent*0.95;
@@ -124,8 +121,9 @@ public class AuctionAgent2 implements AuctionBehavior {
 
 	@Override
 	public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
-		long timeOut = System.currentTimeMillis() + (long) (0.999*planTimeLimit) - 25;
-		// 0.999 for safety + 25ms for the plan computing
+		mlc.setTelemetryPhase("plan");
+		mlc.setStopOnPlateau(false);
+		long timeOut = System.currentTimeMillis() + mlc.searchTime(planTimeLimit);
 		
 		ArrayList<Task> list = new ArrayList<Task>();
         for (Task task: tasks) {
@@ -136,35 +134,19 @@ public class AuctionAgent2 implements AuctionBehavior {
 	}
 	
 	/**
-	 * For every Task in tasks we look at the shortest path from pickup to delivery city.
-	 * We then do the same for t2
-	 * We return the lenght of the links that are covered by t2 but not by the list of existing tasks
-	 * @param tasks: List of current tasks of an agent
+	 * We look at the shortest path from pickup to delivery city of every task we lost (their links are kept in
+	 * lostLinks as they are lost), then we do the same for t2
+	 * We return the length of the links of t2 that are also covered by the lost tasks
 	 * @param t2: One possible new task with pickup and delivery city
 	 * @return Sum of the distances as decribed above
 	 * 
 	 */
-	public int lengthNewLinks(List<Task> tasks, Task t2) {
-		Map<City, Set<City>> covered = new HashMap<City, Set<City>>();
-		for (Task t : tasks) {
-			List<City> path_t = t.path();
-			for (int i=0;i<path_t.size()-1;i++) {
-				Set s = covered.get(path_t.get(i));
-				if (s == null) {
-				    s = new HashSet<City>();
-				    covered.put(path_t.get(i), s);
-				}
-				s.add(path_t.get(i+1));
-			}
-		}
-		int dist = 0;
-		List<City> path_t2 = t2.path();
-		for (int i = 0; i<t2.path().size()-1; i++) {
-			Set<City> s = covered.get(path_t2.get(i));
-			if(s != null && s.contains(path_t2.get(i+1))) {
-				dist += path_t2.get(i).distanceTo(path_t2.get(i+1));
-			}
-		}
-		return dist;
+	public int lengthNewLinks(Task t2) {
+		return (int) lostLinks.coveredLength(t2);
+	}
+
+	@Override
+	public void close() {
+		mlc.shutdown();
 	}
 }
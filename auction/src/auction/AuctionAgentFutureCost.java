@@ -1,11 +1,12 @@
 package auction;
 
+import java.io.Closeable;
 import java.io.File;
 //the list of imports
 import java.util.ArrayList;
 import java.util.List;
-import java.util.PriorityQueue;
 
+import common.Solution;
 import logist.LogistSettings;
 import logist.behavior.AuctionBehavior;
 import logist.config.Parsers;
@@ -21,8 +22,10 @@ import logist.topology.Topology.City;
 /**
  * An auction agent
  * 
+ * Closeable so that whoever plays many games in the same JVM (like tools.AuctionSimulator) can stop its threads,
+ * the platform never calls close
  */
-public class AuctionAgentFutureCost implements AuctionBehavior {
+public class AuctionAgentFutureCost implements AuctionBehavior, Closeable {
 
 	private ArrayList<Task> tasks;
 	private Agent agent;
@@ -46,6 +49,14 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 	private double updateFactorUp = 0.6; // update factor we use when increasing the bidGain
 	private double updateFactorDown = 0.9; // bigger than updateFactorUp because loosing a task to the opponent out of greed is much worse than
 	// not making that much profit by delivering it
+	private SpeculativeSearch speculation; // searches while we wait, once we stopped using artificial tasks
+	private double refinementShare; // share of the bid time used to refine a solution precomputed by speculation
+	private FutureCostEstimator futureCost; // marginal cost of the tasks given the future tasks
+	private double futureShare; // share of the bid time used to estimate the future marginal cost
+	private double futureWeight; // weight of the future marginal cost in the bid, the current marginal cost has the rest
+	private double futureQuantile; // quantile of the future marginal cost we bid on, negative to bid on its mean
+	private int futureHorizon; // number of future tasks we assume to get in the scenarios
+	private long resultTime = 0; // when auctionResult was last called, see callStart
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution,
@@ -68,7 +79,7 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 		
 		LogistSettings ls = null;
         try {
-            ls = Parsers.parseSettings("config" + File.separator + "settings_auction.xml");
+            ls = Parsers.parseSettings(agent.readProperty("settings", String.class, "config" + File.separator + "settings_auction.xml"));
         }
         catch (Exception exc) {
             System.out.println("There was a problem loading the configuration file.");
@@ -82,19 +93,34 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
         
         
         // Compute the nbrArtificialTasks most probable tasks
-        PriorityQueue<TaskProba> pq = new PriorityQueue<TaskProba>();
-        for (City pickup: topology.cities()) {
-        	for (City deliver: topology.cities()) {
-        		pq.add(new TaskProba(distribution.probability(pickup, deliver), pickup, deliver, distribution.weight(pickup, deliver)));
-        	}
-        }
-        
-        for (int i=0; i<nbrArtificialTasks; i++) {
-        	TaskProba tp = pq.poll();
+        for (TaskProba tp: TaskProba.mostProbable(topology, distribution, nbrArtificialTasks)) {
         	artificalTasksWeights.add(tp.weight);
         	artificalTasksPickupCities.add(tp.pickupCity);
         	artificalTasksDeliverCities.add(tp.deliveryCity);
         }
+        
+        // the fields keep their value unless the agent has the property
+        bidGain = agent.readProperty("bid-gain", Long.class, bidGain);
+        minBidGain = agent.readProperty("min-bid-gain", Long.class, minBidGain);
+        maxBidGain = agent.readProperty("max-bid-gain", Long.class, maxBidGain);
+        updateFactorUp = agent.readProperty("update-factor-up", Double.class, updateFactorUp);
+        updateFactorDown = agent.readProperty("update-factor-down", Double.class, updateFactorDown);
+        
+        int nbrSpeculativeTasks = agent.readProperty("speculative-tasks", Integer.class, 10);
+        long sliceTime = agent.readProperty("speculative-slice", Integer.class, 20);
+        refinementShare = agent.readProperty("refinement-share", Double.class, 0.2);
+        speculation = new SpeculativeSearch(mlc, TaskProba.mostProbable(topology, distribution, nbrSpeculativeTasks), sliceTime);
+        
+        futureShare = agent.readProperty("future-share", Double.class, 0.2);
+        futureWeight = agent.readProperty("future-weight", Double.class, 0.5);
+        futureQuantile = agent.readProperty("future-quantile", Double.class, -1.);
+        futureHorizon = agent.readProperty("future-horizon", Integer.class, 5);
+        futureCost = new FutureCostEstimator(topology, distribution, agent.vehicles(),
+        		agent.readProperty("future-scenarios", Integer.class, 20000), 16,
+        		agent.readProperty("future-threads", Integer.class, Runtime.getRuntime().availableProcessors()), agent.id());
+        
+        // runs the searches on synthetic problems so that the JIT compiled them before the first bid
+        mlc.warmUp(topology.cities(), agent.vehicles(), start, setupTimeLimit);
        
         if (setupTimeLimit > bidTimeLimit/2) { // in that case, we compute the cost of the 
         	// solution with only the first tasks here, otherwise we will compute it in the askPrice method
@@ -105,9 +131,12 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 
 	@Override
 	public void auctionResult(Task previous, int winner, Long[] bids) {
+		resultTime = System.currentTimeMillis();
+		speculation.pause();
 		if (winner == agent.id()) {
-			prevSol = newSolWithTask;
+			prevSol = better(newSolWithTask, speculation.getCurrent());
 		} else {
+			prevSol = better(prevSol, speculation.getAlternative());
 			if (tasks.size() <= artificialTasksUsageLimit) {
 				artificalTasksWeights.remove(artificalTasksWeights.size()-1);
 				artificalTasksPickupCities.remove(artificalTasksPickupCities.size()-1);
@@ -136,14 +165,36 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 			bidGain += (long) (updateFactor*(oppBid - ourBid));
 			bidGain = Math.min(Math.max(bidGain, minBidGain), maxBidGain); // we assure ourselves to stay in the boundaries
 		}
+		
+		if (madeTransitionArtificialTasks) {  // we search on our real tasks until the next auction
+			speculation.resume(tasks, prevSol, null, null);
+		}
+	}
+	
+	/*
+	 * return when the call of the platform that is running started: the platform calls auctionResult at the beginning
+	 * of the next askPrice or plan and times both together, so the time auctionResult took (e.g. waiting for the
+	 * speculation to pause) counts against the timeout of the call
+	 */
+	private long callStart(long timeout) {
+		long now = System.currentTimeMillis();
+		return (now - resultTime < timeout) ? resultTime : now;
+	}
+	
+	// return the cheapest of the two solutions, the second one may be null
+	private Solution better(Solution sol, Solution other) {
+		return (other != null && other.getCost() < sol.getCost()) ? other : sol;
 	}
 	
 	@Override
 	public Long askPrice(Task task) {
+		long timeOut = callStart(bidTimeLimit) + mlc.searchTime(bidTimeLimit);
+		speculation.pause();
+		mlc.setTelemetryPhase("bid " + task.id);
+		mlc.setStopOnPlateau(true);
 		if (task.weight > maxVehicleCapacity) {
 			return null;
 		}
-		long timeOut = System.currentTimeMillis() + bidTimeLimit - 35;
 		
 		if (prevSol == null) {
 			long timeOutPrevSol = timeOut - bidTimeLimit/2;
@@ -155,6 +206,10 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 			madeTransitionArtificialTasks = true;
 		}
 				
+		// expected marginal cost of the task once the next tasks are added to our current routes
+		FutureCostEstimator.Estimate future = futureCost.estimate(prevSol, task, futureHorizon,
+				System.currentTimeMillis() + (long) (futureShare * bidTimeLimit));
+		
 		tasks.add(task); // we add it no matter what and will remove it if we don't get the task
 		if (tasks.size() <= artificialTasksUsageLimit) { // equal since we added one to the task size right before
 			artificalTasksWeights.add(task.weight);
@@ -162,17 +217,39 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 			artificalTasksDeliverCities.add(task.deliveryCity);
 			newSolWithTask = mlc.getSolution(artificalTasksWeights, artificalTasksPickupCities, artificalTasksDeliverCities, timeOut, true);
 		} else {
-			newSolWithTask = mlc.getSolution(tasks, timeOut, true);
+			// the speculative search may have improved our solution and precomputed the one with that task
+			Solution current = speculation.getCurrent(), start = speculation.lookup(task);
+			if (madeTransitionArtificialTasks && current != null && current.getCost() < prevSol.getCost()) {
+				prevSol = current;
+			}
+			if (start != null) {  // we only refine it
+				timeOut = Math.min(timeOut, System.currentTimeMillis() + (long) (refinementShare * bidTimeLimit));
+			} else {
+				start = current;
+			}
+			newSolWithTask = mlc.getSolution(tasks, start, timeOut, true);
+			
+			/* while the opponent computes his bid, we keep improving both outcomes of the auction and precompute the
+			 * next bids as if we won it, the precomputations are kept in auctionResult if we do */
+			speculation.resume(tasks, newSolWithTask, new ArrayList<Task>(tasks.subList(0, tasks.size() - 1)), prevSol);
 		}
 
-		double bid = Math.max(1, newSolWithTask.cost - prevSol.cost) + bidGain; // if prevSol.cost > newSolWithTask.cost, the cost is negative because
+		double marginalCost = newSolWithTask.getCost() - prevSol.getCost();
+		if (future != null) {
+			double futureMarginalCost = (futureQuantile < 0) ? future.mean : future.quantile(futureQuantile);
+			marginalCost = (1 - futureWeight) * marginalCost + futureWeight * futureMarginalCost;
+		}
+		double bid = Math.max(1, marginalCost) + bidGain; // if prevSol.getCost() > newSolWithTask.getCost(), the cost is negative because
 		// the stochastic search did not find a goos solution and we should not use that to compute the bid
 		return (long) Math.round(bid);
 	}
 
 	@Override
 	public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
-		long timeOut = System.currentTimeMillis() + planTimeLimit - 40;
+		long timeOut = callStart(planTimeLimit) + mlc.searchTime(planTimeLimit);
+		speculation.pause();
+		mlc.setTelemetryPhase("plan");
+		mlc.setStopOnPlateau(false);
 		
 		ArrayList<Task> list = new ArrayList<Task>();
         for (Task task: tasks) {
@@ -181,4 +258,11 @@ public class AuctionAgentFutureCost implements AuctionBehavior {
 		Solution newSol = mlc.getSolution(list, timeOut, true);
 		return newSol.getPlans(list);
 	}
+
+	@Override
+	public void close() {
+		speculation.stop();
+		futureCost.shutdown();
+		mlc.shutdown();
+	}
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package auction;
 
+import java.io.Closeable;
 import java.io.File;
 //the list of imports
 import java.util.ArrayList;
 import java.util.List;
 
+import common.Solution;
 import logist.LogistSettings;
 import logist.behavior.AuctionBehavior;
 import logist.config.Parsers;
@@ -19,8 +21,10 @@ import logist.topology.Topology;
 /**
  * An auction agent
  * 
+ * Closeable so that whoever plays many games in the same JVM (like tools.AuctionSimulator) can stop its threads,
+ * the platform never calls close
  */
-public class AuctionDummy implements AuctionBehavior {
+public class AuctionDummy implements AuctionBehavior, Closeable {
 
 	private ArrayList<Task> tasks;
 	private Agent agent;
@@ -30,20 +34,22 @@ public class AuctionDummy implements AuctionBehavior {
 	private long planTimeLimit;
 	private long bidTimeLimit;
 	private int maxVehicleCapacity = 0;
-	private List<Long[]> bidHistory;  // List of array containing the history of the bids
-	// our bids are put at the first position
+	private BidHistory bidHistory;  // the bids and the winners of the last auctions
 	private long bidGain = 750;
+	private double gainAdaptation = 1.; // how much the gain follows our win rate, see askPrice
+	private static final int MIN_HISTORY = 5; // number of auctions before the gain follows the win rate
 
 	@Override
 	public void setup(Topology topology, TaskDistribution distribution,
 			Agent agent) {
 
+		long start = System.currentTimeMillis();
 		this.tasks = new ArrayList<Task>();
 		this.agent = agent;
 		this.mlc = new MarginalLossComputer(agent);
 		this.prevSol = null;
 		this.newSolWithTask = null;
-		this.bidHistory = new ArrayList<Long[]>();
+		this.bidHistory = new BidHistory(agent.id(), agent.readProperty("history-size", Integer.class, 1000));
 		for(Vehicle vehicle: agent.vehicles()) {
 			if (vehicle.capacity() > maxVehicleCapacity) {
 				maxVehicleCapacity = vehicle.capacity();
@@ -52,7 +58,7 @@ public class AuctionDummy implements AuctionBehavior {
 		
 		LogistSettings ls = null;
         try {
-            ls = Parsers.parseSettings("config" + File.separator + "settings_auction.xml");
+            ls = Parsers.parseSettings(agent.readProperty("settings", String.class, "config" + File.separator + "settings_auction.xml"));
         }
         catch (Exception exc) {
             System.out.println("There was a problem loading the configuration file.");
@@ -63,16 +69,17 @@ public class AuctionDummy implements AuctionBehavior {
         // the bid method cannot execute more than bidTimeLimit milliseconds
         this.bidTimeLimit = ls.get(LogistSettings.TimeoutKey.BID);
 
-        System.out.println("Auction dummy always wants a gain " + bidGain);
+        bidGain = agent.readProperty("bid-gain", Long.class, bidGain);
+        gainAdaptation = agent.readProperty("gain-adaptation", Double.class, gainAdaptation);
+        System.out.println("Auction dummy wants a gain around " + bidGain);
+
+        // runs the searches on synthetic problems so that the JIT compiled them before the first bid
+        mlc.warmUp(topology.cities(), agent.vehicles(), start, ls.get(LogistSettings.TimeoutKey.SETUP));
 	}
 
 	@Override
 	public void auctionResult(Task previous, int winner, Long[] bids) {
-		// we put our bid in the first position
-		Long[] bidsCopy = bids.clone();
-		bidsCopy[agent.id()] = bids[0];
-		bidsCopy[0] = bids[agent.id()];
-		bidHistory.add(bidsCopy);
+		bidHistory.add(bids, winner);
 		
 		if (winner == agent.id()) {
 			this.prevSol = this.newSolWithTask;
@@ -84,28 +91,36 @@ public class AuctionDummy implements AuctionBehavior {
 	
 	@Override
 	public Long askPrice(Task task) {
+		mlc.setTelemetryPhase("bid " + task.id);
+		mlc.setStopOnPlateau(true);
 		if (task.weight > maxVehicleCapacity) {
 			return null;
 		}
-		double prevCost = (prevSol == null) ? 0 : prevSol.cost;
+		double prevCost = (prevSol == null) ? 0 : prevSol.getCost();
 		
 		this.tasks.add(task);  // we add it no matter what and will remove it if we don't get the task
-		long timeOut = System.currentTimeMillis() + bidTimeLimit - 20;
-		// 0.999 for safety + 5ms for the rest of the method
+		long timeOut = System.currentTimeMillis() + mlc.searchTime(bidTimeLimit);
 		this.newSolWithTask = mlc.getSolution(this.tasks, timeOut, true);
 		
 		// TODO: add time adaptability
 		// TODO: add adaptation to ennemy
 		// TODO; si on a un cout < 0, on peut suremnt le mettre à 0 comme c'est task specific
 
-		double bid = Math.max(1, newSolWithTask.cost - prevCost) + bidGain;
+		/* the more auctions we won lately, the more we can ask: the gain goes from (1 - gainAdaptation/2) times
+		 * bidGain if we won none to (1 + gainAdaptation/2) times if we won all of them */
+		double gain = bidGain;
+		if (bidHistory.size() >= MIN_HISTORY) {
+			gain *= Math.max(0, 1 + gainAdaptation * (bidHistory.ourWinRate() - 0.5));
+		}
+		double bid = Math.max(1, newSolWithTask.getCost() - prevCost) + gain;
 		return (long) Math.round(bid);
 	}
 
 	@Override
 	public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
-		long timeOut = System.currentTimeMillis() + planTimeLimit - 40;
-		// 0.999 for safety + 25ms for the plan computing
+		mlc.setTelemetryPhase("plan");
+		mlc.setStopOnPlateau(false);
+		long timeOut = System.currentTimeMillis() + mlc.searchTime(planTimeLimit);
 		
 		ArrayList<Task> list = new ArrayList<Task>();
         for (Task task: tasks) {
@@ -114,4 +129,9 @@ public class AuctionDummy implements AuctionBehavior {
 		Solution newSol = mlc.getSolution(list, timeOut, true);
 		return newSol.getPlans(list);
 	}
+
+	@Override
+	public void close() {
+		mlc.shutdown();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package auction;
+
+/*
+ * History of the last auctions of a game: the bid of every agent and the winner of each auction, kept in primitive
+ * ring buffers of a fixed capacity so that the memory used doesn't grow with the number of auctions. The number of
+ * auctions won by every agent over the auctions in the buffers is a rolling sum, updated when an auction enters or
+ * leaves them, so the win rates are O(1).
+ */
+class BidHistory {
+	static final long NO_BID = -1; // stored when an agent didn't bid
+
+	private final int ourId;
+	private long[][] bids; // bids[agent][slot] is the bid of agent in the auction stored at slot
+	private final int[] winners; // winners[slot] is the id of the winner of the auction stored at slot
+	private int first = 0; // slot of the oldest auction
+	private int size = 0; // number of auctions in the buffers
+	private long nbrAuctions = 0; // number of auctions since the beginning, some may have left the buffers
+
+	private int[] wins; // number of auctions in the buffers won by every agent
+
+	// history of at most capacity auctions, ours having the id ourId
+	BidHistory(int ourId, int capacity) {
+		this.ourId = ourId;
+		winners = new int[capacity];
+	}
+
+	// adds the result of an auction, the oldest one is forgotten if the buffers are full
+	void add(Long[] auctionBids, int winner) {
+		if (bids == null) {  // we learn the number of agents with the first auction
+			bids = new long[auctionBids.length][winners.length];
+			wins = new int[auctionBids.length];
+		}
+		if (size == winners.length) {
+			account(first, -1);
+			first = (first + 1) % winners.length;
+			size--;
+		}
+		int slot = (first + size) % winners.length;
+		for (int agent = 0; agent < bids.length; agent++) {
+			bids[agent][slot] = (agent < auctionBids.length && auctionBids[agent] != null) ? auctionBids[agent] : NO_BID;
+		}
+		winners[slot] = winner;
+		size++;
+		nbrAuctions++;
+		account(slot, 1);
+	}
+
+	// adds (sign 1) or removes (sign -1) the auction stored at slot from the rolling sums
+	private void account(int slot, int sign) {
+		int winner = winners[slot];
+		if (winner >= 0 && winner < wins.length) {
+			wins[winner] += sign;
+		}
+	}
+
+	// number of auctions in the history
+	int size() {
+		return size;
+	}
+
+	// number of auctions since the beginning, including the ones that were forgotten
+	long nbrAuctions() {
+		return nbrAuctions;
+	}
+
+	// bid of agent in the auction age auctions ago (0 for the last one), NO_BID if he didn't bid
+	long bid(int agent, int age) {
+		return bids[agent][slotOf(age)];
+	}
+
+	// winner of the auction age auctions ago (0 for the last one)
+	int winner(int age) {
+		return winners[slotOf(age)];
+	}
+
+	private int slotOf(int age) {
+		if (age < 0 || age >= size) {
+			throw new IndexOutOfBoundsException("No auction " + age + " auctions ago, the history has " + size);
+		}
+		return (first + size - 1 - age) % winners.length;
+	}
+
+	// share of the auctions in the history won by agent
+	double winRate(int agent) {
+		return (size == 0 || agent >= wins.length) ? 0 : (double) wins[agent] / size;
+	}
+
+	// share of the auctions in the history we won
+	double ourWinRate() {
+		return winRate(ourId);
+	}
+}
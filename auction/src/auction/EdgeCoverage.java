@@ -0,0 +1,73 @@
+package auction;
+
+import java.util.Arrays;
+
+import common.RoutingTable;
+import logist.task.Task;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * Set of the links of the topology covered by the shortest paths of some tasks, as a bitmap over the directed links
+ * (a link from a to one of its neighbours b has its own bit). The mask of the links of a task is computed once per
+ * pair of cities, so adding a task or measuring how much of its path is already covered only combines a few longs.
+ */
+class EdgeCoverage {
+	private final int[][] linkId; // linkId[a][b] is the bit of the link from a to b (by city id), -1 if not neighbours
+	private final double[] linkLength; // length of every link
+	private final RoutingTable routing;
+	private final long[][][] masks; // masks[p][d] is the mask of the path from p to d, null until we need it
+	private final long[] covered;
+
+	EdgeCoverage(Topology topology) {
+		routing = RoutingTable.of(topology);
+		int nbrIds = routing.nbrIds(), nbrLinks = routing.neighbourStart(nbrIds);
+		linkId = new int[nbrIds][nbrIds];
+		linkLength = new double[nbrLinks];
+		for (int from = 0; from < nbrIds; from++) {  // the links are numbered like the compressed neighbour lists
+			Arrays.fill(linkId[from], -1);
+			for (int link = routing.neighbourStart(from); link < routing.neighbourStart(from + 1); link++) {
+				linkId[from][routing.neighbourId(link)] = link;
+				linkLength[link] = routing.distance(from, routing.neighbourId(link));
+			}
+		}
+		masks = new long[nbrIds][nbrIds][];
+		covered = new long[(nbrLinks + 63) / 64];
+	}
+
+	// adds the links of the shortest path of the task to the covered links
+	void cover(Task task) {
+		long[] mask = mask(task.pickupCity, task.deliveryCity);
+		for (int i = 0; i < covered.length; i++) {
+			covered[i] |= mask[i];
+		}
+	}
+
+	// return the length of the links of the shortest path of the task that are already covered
+	double coveredLength(Task task) {
+		long[] mask = mask(task.pickupCity, task.deliveryCity);
+		double length = 0;
+		for (int i = 0; i < covered.length; i++) {
+			for (long bits = covered[i] & mask[i]; bits != 0; bits &= bits - 1) {
+				length += linkLength[64 * i + Long.numberOfTrailingZeros(bits)];
+			}
+		}
+		return length;
+	}
+
+	// the mask of the links of the shortest path from pickup to delivery
+	private long[] mask(City pickup, City delivery) {
+		long[] mask = masks[pickup.id][delivery.id];
+		if (mask == null) {
+			mask = new long[covered.length];
+			for (City city = pickup; city != delivery; ) {
+				City next = routing.nextHop(city, delivery);
+				int link = linkId[city.id][next.id];
+				mask[link / 64] |= 1L << (link % 64);
+				city = next;
+			}
+			masks[pickup.id][delivery.id] = mask;
+		}
+		return mask;
+	}
+}
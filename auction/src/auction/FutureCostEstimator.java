@@ -0,0 +1,301 @@
+package auction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import common.RoutingTable;
+import common.Solution;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * Monte-Carlo estimation of the marginal cost of a task once the future tasks are taken into account. A scenario is
+ * a sequence of horizon future tasks drawn from the task distribution and inserted in our current routes by cheapest
+ * insertion, the marginal cost of the task in that scenario is the cost of its cheapest insertion in the routes
+ * obtained. A task that goes where the future tasks are likely to go thus gets cheaper.
+ * The scenarios are evaluated by batches on every core until the time limit. Every worker keeps its own routes and
+ * random generator and reuses them, so evaluating a scenario doesn't allocate anything.
+ */
+class FutureCostEstimator {
+	private final int nbrVehicles;
+	private final int[] capacity;
+	private final int[] costPerKm;
+	private final int end; // index of the end of a route in distance, every distance to it is 0
+	private final double[][] distance; // distance between the cities by id
+	private final double[] cumulatedProba; // cumulatedProba[k] is the probability of the pairs 0 to k of cities
+	private final int[] pairPickup, pairDelivery, pairWeight; // pickup and delivery cities and weight of every pair
+	private final int batchSize; // number of scenarios a worker evaluates between two looks at the time
+	private final double[] samples; // the marginal cost in every scenario of the current estimation
+	private final AtomicInteger nbrSamples = new AtomicInteger();
+	private final List<Worker> workers;
+	private final ExecutorService executor;
+
+	// the estimation being done, set before the workers start
+	private int[][] baseCity, baseWeight; // our current routes, the home city of the vehicle first
+	private int[] baseLength;
+	private int taskPickup, taskDelivery, taskWeight;
+	private int horizon;
+	private long timeLimit;
+
+	/*
+	 * estimator for the given vehicles (in the order of the solutions given to estimate), at most maxScenarios
+	 * scenarios are evaluated per estimation by nbrThreads threads
+	 */
+	FutureCostEstimator(Topology topology, TaskDistribution distribution, List<Vehicle> vehicles, int maxScenarios,
+			int batchSize, int nbrThreads, long seed) {
+		nbrVehicles = vehicles.size();
+		capacity = new int[nbrVehicles];
+		costPerKm = new int[nbrVehicles];
+		for (int v = 0; v < nbrVehicles; v++) {
+			capacity[v] = vehicles.get(v).capacity();
+			costPerKm[v] = vehicles.get(v).costPerKm();
+		}
+
+		RoutingTable routing = RoutingTable.of(topology);
+		end = routing.nbrIds();
+		distance = new double[end + 1][end + 1];
+		int nbrPairs = 0;
+		for (City from: topology.cities()) {
+			for (City to: topology.cities()) {
+				distance[from.id][to.id] = routing.distance(from, to);
+				if (from != to && distribution.probability(from, to) > 0) {
+					nbrPairs++;
+				}
+			}
+		}
+
+		cumulatedProba = new double[nbrPairs];
+		pairPickup = new int[nbrPairs];
+		pairDelivery = new int[nbrPairs];
+		pairWeight = new int[nbrPairs];
+		double total = 0;
+		int k = 0;
+		for (City from: topology.cities()) {
+			for (City to: topology.cities()) {
+				if (from != to && distribution.probability(from, to) > 0) {
+					total += distribution.probability(from, to);
+					cumulatedProba[k] = total;
+					pairPickup[k] = from.id;
+					pairDelivery[k] = to.id;
+					pairWeight[k++] = distribution.weight(from, to);
+				}
+			}
+		}
+		for (k = 0; k < nbrPairs; k++) {
+			cumulatedProba[k] /= total;
+		}
+
+		this.batchSize = batchSize;
+		samples = new double[maxScenarios];
+		workers = new ArrayList<Worker>(nbrThreads);
+		for (int i = 0; i < nbrThreads; i++) {
+			workers.add(new Worker(seed + i));
+		}
+		executor = Executors.newFixedThreadPool(nbrThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "future-cost");
+				thread.setDaemon(true);  // must not keep the platform alive once the game is over
+				return thread;
+			}
+		});
+	}
+
+	// stops the workers, estimate cannot be called afterwards
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/*
+	 * return the distribution of the marginal cost of task if it was added to the routes of current after horizon
+	 * future tasks, null if no scenario could be evaluated before timeLimit
+	 */
+	Estimate estimate(Solution current, Task task, int horizon, long timeLimit) {
+		baseCity = new int[nbrVehicles][];
+		baseWeight = new int[nbrVehicles][];
+		baseLength = new int[nbrVehicles];
+		for (int v = 0; v < nbrVehicles; v++) {
+			City[] cities = new City[current.getRouteLength(v) + 1];
+			baseWeight[v] = new int[cities.length];
+			baseLength[v] = current.getRoute(v, cities, baseWeight[v]);
+			baseCity[v] = new int[cities.length];
+			for (int i = 0; i < cities.length; i++) {
+				baseCity[v][i] = cities[i].id;
+			}
+		}
+		taskPickup = task.pickupCity.id;
+		taskDelivery = task.deliveryCity.id;
+		taskWeight = task.weight;
+		this.horizon = horizon;
+		this.timeLimit = timeLimit;
+		nbrSamples.set(0);
+
+		try {
+			for (Future<Void> result: executor.invokeAll(workers)) {
+				result.get();  // rethrows what went wrong in a worker
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		int n = Math.min(nbrSamples.get(), samples.length);
+		return (n == 0) ? null : new Estimate(Arrays.copyOf(samples, n));
+	}
+
+	/*
+	 * distribution of the marginal cost of a task over the scenarios
+	 */
+	static class Estimate {
+		final double mean;
+		private final double[] sorted; // the marginal cost in every scenario, in increasing order
+
+		private Estimate(double[] samples) {
+			sorted = samples;
+			Arrays.sort(sorted);
+			double sum = 0;
+			for (double sample: sorted) {
+				sum += sample;
+			}
+			mean = sum / sorted.length;
+		}
+
+		// return the q quantile of the marginal cost (0 <= q <= 1)
+		double quantile(double q) {
+			return sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))];
+		}
+
+		int nbrScenarios() {
+			return sorted.length;
+		}
+	}
+
+	/*
+	 * evaluates scenarios until the time limit or until enough were evaluated
+	 */
+	private class Worker implements Callable<Void> {
+		private final Random random;
+		private int[][] city = new int[nbrVehicles][0], weight = new int[nbrVehicles][0];
+		private int[][] load = new int[nbrVehicles][0]; // load[v][i] is the load of v after city[v][i]
+		private final int[] length = new int[nbrVehicles];
+		private int bestVehicle, bestPickup, bestDelivery; // where the last call to insert found the cheapest insertion
+
+		Worker(long seed) {
+			random = new Random(seed);
+		}
+
+		@Override
+		public Void call() {
+			for (int v = 0; v < nbrVehicles; v++) {  // the routes grow by at most horizon + 1 tasks
+				if (city[v].length < baseLength[v] + 2 * (horizon + 1)) {
+					city[v] = new int[baseLength[v] + 2 * (horizon + 1)];
+					weight[v] = new int[city[v].length];
+					load[v] = new int[city[v].length];
+				}
+			}
+			while (System.currentTimeMillis() < timeLimit) {
+				for (int b = 0; b < batchSize; b++) {
+					int index = nbrSamples.getAndIncrement();
+					if (index >= samples.length) {
+						return null;
+					}
+					samples[index] = scenario();
+				}
+			}
+			return null;
+		}
+
+		// return the marginal cost of the task after a random sequence of future tasks
+		private double scenario() {
+			for (int v = 0; v < nbrVehicles; v++) {
+				System.arraycopy(baseCity[v], 0, city[v], 0, baseLength[v]);
+				System.arraycopy(baseWeight[v], 0, weight[v], 0, baseLength[v]);
+				length[v] = baseLength[v];
+				updateLoad(v, 0);
+			}
+			for (int k = 0; k < horizon; k++) {
+				int pair = Arrays.binarySearch(cumulatedProba, random.nextDouble());
+				pair = Math.min((pair < 0) ? -pair - 1 : pair, cumulatedProba.length - 1);
+				if (insert(pairPickup[pair], pairDelivery[pair], pairWeight[pair]) < Double.POSITIVE_INFINITY) {
+					apply(pairPickup[pair], pairDelivery[pair], pairWeight[pair]);
+				}
+			}
+			return insert(taskPickup, taskDelivery, taskWeight);
+		}
+
+		/*
+		 * return the cost of the cheapest insertion of a task in the routes (infinity if no vehicle can carry it) and
+		 * remembers where it is: the pickup after city[bestVehicle][bestPickup] and the delivery after
+		 * city[bestVehicle][bestDelivery] (the pickup itself if bestDelivery is bestPickup)
+		 */
+		private double insert(int pickup, int delivery, int w) {
+			double best = Double.POSITIVE_INFINITY;
+			for (int v = 0; v < nbrVehicles; v++) {
+				int[] c = city[v], l = load[v];
+				int n = length[v], free = capacity[v] - w;
+				for (int i = 0; i < n; i++) {
+					if (l[i] > free) {
+						continue;
+					}
+					int next = (i + 1 < n) ? c[i + 1] : end;
+					double pickupDetour = distance[c[i]][pickup] + distance[pickup][next] - distance[c[i]][next];
+					double cost = costPerKm[v] * (distance[c[i]][pickup] + distance[pickup][delivery]
+							+ distance[delivery][next] - distance[c[i]][next]);
+					if (cost < best) {
+						best = cost;
+						bestVehicle = v;
+						bestPickup = i;
+						bestDelivery = i;
+					}
+					for (int j = i + 1; j < n && l[j] <= free; j++) {  // the task is carried until after c[j]
+						int after = (j + 1 < n) ? c[j + 1] : end;
+						cost = costPerKm[v] * (pickupDetour + distance[c[j]][delivery] + distance[delivery][after]
+								- distance[c[j]][after]);
+						if (cost < best) {
+							best = cost;
+							bestVehicle = v;
+							bestPickup = i;
+							bestDelivery = j;
+						}
+					}
+				}
+			}
+			return best;
+		}
+
+		// inserts a task where the last call to insert found it the cheapest
+		private void apply(int pickup, int delivery, int w) {
+			int v = bestVehicle, i = bestPickup, j = bestDelivery, n = length[v];
+			int[] c = city[v], wt = weight[v];
+			System.arraycopy(c, j + 1, c, j + 3, n - j - 1);
+			System.arraycopy(wt, j + 1, wt, j + 3, n - j - 1);
+			System.arraycopy(c, i + 1, c, i + 2, j - i);
+			System.arraycopy(wt, i + 1, wt, i + 2, j - i);
+			c[i + 1] = pickup;
+			wt[i + 1] = w;
+			c[j + 2] = delivery;
+			wt[j + 2] = -w;
+			length[v] = n + 2;
+			updateLoad(v, i + 1);
+		}
+
+		// recomputes the load of v from city[v][from]
+		private void updateLoad(int v, int from) {
+			int currentLoad = (from == 0) ? 0 : load[v][from - 1];
+			for (int i = from; i < length[v]; i++) {
+				currentLoad += weight[v][i];
+				load[v][i] = currentLoad;
+			}
+		}
+	}
+}
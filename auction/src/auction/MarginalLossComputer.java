@@ -5,7 +5,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import common.ProblemInstance;
+import common.SearchTelemetry;
+import common.Solution;
+import common.TelemetryLog;
+import common.WarmUp;
+import common.Watchdog;
 import logist.agent.Agent;
+import logist.simulation.Vehicle;
 import logist.task.Task;
 import logist.topology.Topology.City;
 
@@ -23,8 +32,23 @@ public class MarginalLossComputer {
     private int[] oppCostPerKm;
     
     private Algo algorithm;
+    private Solution.Init initialization;
     private double parameter1;
     private double parameter2;
+    private AtomicLong emptyNeighbourhoods = new AtomicLong(); /* number of search iterations that found no neighbour
+    since the creation, our search and the opponent's one may run concurrently */
+    private int polishPeriod; // number of iterations of the simulated annealing between two polishings of the routes
+    private Solution lastSolution; // the last solution we returned for our agent, the next search starts from it
+    private Solution oppLastSolution; // same as above for the opponent
+    private TelemetryLog telemetryLog; // null unless the agent has the property telemetry
+    private volatile String telemetryPhase = "setup"; // what the agent is doing, see setTelemetryPhase
+    private volatile boolean stopOnPlateau = false; // see setStopOnPlateau
+    private int plateauIterations; // a search stops early once its best cost didn't improve for that many iterations
+    private double plateauFactor; // and for plateauFactor times the time it took to find it (never if <= 0)
+    private double lastGain, oppLastGain; // relative improvement of the last search for our agent and for the opponent
+    private long deadlineMargin; // the watchdog returns the best solution so far that many ms after the time limit
+    private Watchdog watchdog; // runs the searches, see getSolution
+    private long warmUpTime; // maximal duration of the warm-up in ms, see warmUp
     
     public MarginalLossComputer(Agent agent) {
         
@@ -46,12 +70,79 @@ public class MarginalLossComputer {
         case SIMULATEDANNEALING:
         	parameter1 = agent.readProperty("temperature-begin", Double.class, 1000.);
         	parameter2 = agent.readProperty("temperature-end", Double.class, 100.);
+        	polishPeriod = agent.readProperty("polish-period", Integer.class, 200);
         	break;
         }
+        initialization = Solution.Init.valueOf(agent.readProperty("initialization", String.class, "CheapestInsertion").toUpperCase());
+        telemetryLog = TelemetryLog.of(agent);
+        plateauIterations = agent.readProperty("plateau-iterations", Integer.class, 5000);
+        plateauFactor = agent.readProperty("plateau-factor", Double.class, 4.);
+        deadlineMargin = agent.readProperty("deadline-margin", Integer.class, 10);
+        watchdog = new Watchdog("marginal-loss-search");
+        warmUpTime = agent.readProperty("warm-up", Integer.class, 1000);
     }
     
     /*
-     * updates the homeCity, capacity and costPerKm of the opponent
+     * runs the searches on synthetic problems on the cities (see common.WarmUp) during the setup that started at start,
+     * for half of setupTimeout and at most warmUpTime ms, so that the JIT compiled them before the first bid. The
+     * solutions found are forgotten
+     */
+    public void warmUp(List<City> cities, List<Vehicle> vehicles, long start, long setupTimeout) {
+    	long timeLimit = WarmUp.timeLimit(start, setupTimeout, warmUpTime);
+    	WarmUp warmUp = new WarmUp(cities, vehicles);
+    	String phase = telemetryPhase;
+    	telemetryPhase = "warm-up";
+    	while (System.currentTimeMillis() < timeLimit) {
+    		ArrayList<Task> tasks = warmUp.nextTasks();
+    		getSolution(tasks, Math.min(timeLimit, System.currentTimeMillis() + 10 * tasks.size()), true);
+    	}
+    	telemetryPhase = phase;
+    	lastSolution = null;
+    	lastGain = 0;
+    }
+    
+    /*
+     * return the time the searches of a call to the agent with that timeout can be given: the watchdog returns their best
+     * solution so far deadlineMargin ms after their time limit if they are late, and the agent keeps deadlineMargin ms
+     * to return what it computed from it
+     */
+    public long searchTime(long timeout) {
+    	return timeout - 2 * deadlineMargin;
+    }
+    
+    // interrupts the searches still running, the object can't be used afterwards
+    public void shutdown() {
+    	watchdog.shutdown();
+    }
+    
+    /*
+     * the searches started from now on are recorded as part of phase (e.g. "bid 3") when the telemetry is on,
+     * including the ones started by other threads (speculation, search for the opponent)
+     */
+    public void setTelemetryPhase(String phase) {
+    	telemetryPhase = phase;
+    }
+    
+    /*
+     * if stop is true, the searches started from now on return before their time limit once their best cost plateaus
+     * (see converged), the agents turn it on for the bids, where an estimate of the marginal cost is enough, and off for
+     * the plans
+     */
+    public void setStopOnPlateau(boolean stop) {
+    	stopOnPlateau = stop;
+    }
+    
+    /*
+     * return how much the last search for our agent (or for the opponent) improved the solution it started from, as a
+     * share of the cost of that solution: 0 when the insertion of the new tasks was already as good as it gets
+     */
+    public double getLastGain(boolean forOurAgent) {
+    	return (forOurAgent) ? lastGain : oppLastGain;
+    }
+    
+    /*
+     * updates the homeCity, capacity and costPerKm of the opponent, must not be called during a search.
+     * The searches for our agent and for the opponent only share read-only data so they can run concurrently
      */
     public void updateOpponent(ArrayList<Integer> oppStartCities, int maxVehicleCapacity, int avgCostPerKm, List<City> citites) {
     	oppHomeCity = new City[oppStartCities.size()];
@@ -63,14 +154,30 @@ public class MarginalLossComputer {
     		oppCapacity[i] = maxVehicleCapacity;
     		oppCostPerKm[i] = avgCostPerKm;
     	}
+    	oppLastSolution = null;  // it was for other vehicles
     }
 
     /*
-     * return the best solution (found by stochastic search) to the problem of delivering *tasks* Tasks (assuming ot be non empty)
+     * return the number of search iterations that found no neighbour since the creation of the object
+     */
+    public long getEmptyNeighbourhoods() {
+    	return emptyNeighbourhoods.get();
+    }
+
+    /*
+     * return the best solution (found by stochastic search and with polished routes) to the problem of delivering *tasks* Tasks (assuming ot be non empty)
      * with *vehicles* vehicles before the given *timeLimit*, if *forOurAgent* is set to true, we compute a solution for the main 
      * agent oterwise we do it for the opponent
      */
     public Solution getSolution(ArrayList<Task> tasks, long timeLimit, boolean forOurAgent) {
+    	return getSolution(tasks, null, timeLimit, forOurAgent);
+    }
+    
+    /*
+     * same function as above but if start isn't null, the search starts from it (it must be a solution for the same
+     * agent) instead of the last solution we returned
+     */
+    public Solution getSolution(ArrayList<Task> tasks, Solution start, long timeLimit, boolean forOurAgent) {
     	ArrayList<Integer> tasksWeights = new ArrayList<Integer>(tasks.size());
     	ArrayList<City> TaksPickupCity = new ArrayList<City>(tasks.size());
     	ArrayList<City> TaskDeliverCity = new ArrayList<City>(tasks.size());
@@ -82,45 +189,119 @@ public class MarginalLossComputer {
     		TaskDeliverCity.add(task.deliveryCity);
     	}
     	
-    	return getSolution(tasksWeights, TaksPickupCity, TaskDeliverCity, timeLimit, forOurAgent);
+    	return getSolution(tasksWeights, TaksPickupCity, TaskDeliverCity, start, timeLimit, forOurAgent);
     }
     
     /*
-     * same function as above but works with non tasks arguments so because we can't create tasks trough the logist API
+     * same function as above but works with non tasks arguments so because we can't create tasks trough the logist API.
+     * The search doesn't start from scratch: the tasks that were in the last solution returned for the same agent keep
+     * their place, the ones that aren't in the problem anymore are removed and the new ones are inserted at their
+     * cheapest position. Between two auctions, the problem only differs by one or two tasks.
+     * The search runs under a watchdog: if it isn't over deadlineMargin ms after timeLimit, its best solution so far is
+     * returned (see Watchdog).
      */
     public Solution getSolution(ArrayList<Integer> tasksWeights, ArrayList<City> TaksPickupCity,
     		ArrayList<City> TaskDeliverCity, long timeLimit, boolean forOurAgent) {
-    	Solution solution;
+    	return getSolution(tasksWeights, TaksPickupCity, TaskDeliverCity, null, timeLimit, forOurAgent);
+    }
+    
+    // same as above, starting from start if it isn't null
+    private Solution getSolution(ArrayList<Integer> tasksWeights, ArrayList<City> TaksPickupCity,
+    		ArrayList<City> TaskDeliverCity, Solution start, long timeLimit, boolean forOurAgent) {
+    	ProblemInstance problem;
+    	Solution solution, lastSol = (start != null) ? start : (forOurAgent) ? lastSolution : oppLastSolution;
     	if (forOurAgent) {
-    		solution = new Solution(tasksWeights, TaksPickupCity, TaskDeliverCity, homeCity, capacity, costPerKm);
+    		problem = new ProblemInstance(tasksWeights, TaksPickupCity, TaskDeliverCity, homeCity, capacity, costPerKm);
     	} else {
-    		solution = new Solution(tasksWeights, TaksPickupCity, TaskDeliverCity, oppHomeCity, oppCapacity, oppCostPerKm);
+    		problem = new ProblemInstance(tasksWeights, TaksPickupCity, TaskDeliverCity, oppHomeCity, oppCapacity, oppCostPerKm);
     	}
-        if (tasksWeights.size() == 0) { // no search to perfom
-        	return solution;
+    	if (lastSol == null) {
+    		solution = new Solution(problem, initialization);
+    	} else {
+    		solution = new Solution(problem, lastSol, problem.matchTasks(lastSol.getProblem()));
+    	}
+    	
+        double startCost = solution.getCost();
+        if (tasksWeights.size() != 0) { // otherwise there is no search to perfom
+        	final SearchTelemetry telemetry = (telemetryLog == null) ? null
+        			: telemetryLog.start(telemetryPhase, algorithm + ((forOurAgent) ? " ours" : " opponent"), tasksWeights.size());
+        	final Solution initial = solution;
+        	final long searchLimit = timeLimit;
+        	final Watchdog.BestSoFar best = new Watchdog.BestSoFar(solution);
+        	solution = watchdog.call(new Callable<Solution>() {
+        		@Override
+        		public Solution call() {
+        			return search(initial, searchLimit, telemetry, best);
+        		}
+        	}, best, timeLimit + deadlineMargin);
         }
         
+        double gain = (startCost > 0) ? Math.max(0, (startCost - solution.getCost()) / startCost) : 0;
+        if (forOurAgent) {
+        	lastSolution = solution;
+        	lastGain = gain;
+        } else {
+        	oppLastSolution = solution;
+        	oppLastGain = gain;
+        }
+        return solution;
+    }
+    
+    /*
+     * runs the search of the agent from solution until timeLimit and polishes the routes of the result, publishing each
+     * better solution in best. The telemetry is queued here, the caller may have moved on when the search ends
+     */
+    private Solution search(Solution solution, long timeLimit, SearchTelemetry telemetry, Watchdog.BestSoFar best) {
         switch (algorithm) {
         case TAKERANDOMWITHP:
-        	return stochasticSearchTakeRandomWithP(solution, parameter1, timeLimit);
+        	solution = stochasticSearchTakeRandomWithP(solution, parameter1, timeLimit, telemetry, best).polishRoutes();
+        	break;
         case SIMULATEDANNEALING:
-        	return simulatedAnnealing(solution, parameter1, parameter2, timeLimit);
-        default:
-        	return null;
+        	solution = simulatedAnnealing(solution, parameter1, parameter2, timeLimit, telemetry, best).polishRoutes();
+        	break;
         }
+        best.offer(solution);
+        if (telemetry != null) {
+        	telemetry.end(solution);
+        	telemetryLog.write(telemetry);
+        }
+        return solution;
     }
     
     /* performs the stochastic search, at each stage, with probability p, we take the neighbourgh
-     * with best score, with probability 1-p, we take a random new neighbourg
+     * with best score, with probability 1-p, we take a random new neighbourg. What the search does is recorded in
+     * telemetry if it isn't null
      */
-	private Solution stochasticSearchTakeRandomWithP(Solution solution, double probability, long timeLimit) {
+	private Solution stochasticSearchTakeRandomWithP(Solution solution, double probability, long timeLimit,
+			SearchTelemetry telemetry, Watchdog.BestSoFar best) {
 		Solution bestCurrentSolution = solution;
 		Random generator = new Random();
 		ArrayList<Solution> neighbourgs;
+		boolean stopOnPlateau = this.stopOnPlateau;
+		long startTime = System.currentTimeMillis(), lastImprovement = startTime;
+		int sinceImprovement = 0;
+		if (telemetry != null) {
+			telemetry.begin(solution);
+		}
 		
-        while (System.currentTimeMillis() < timeLimit) {
+        for (long currentTime = startTime; currentTime < timeLimit; currentTime = System.currentTimeMillis()) {
+        	if (stopOnPlateau && converged(sinceImprovement, startTime, lastImprovement, currentTime)) {
+        		break;
+        	}
+        	boolean sampled = telemetry != null && telemetry.sampling();
+        	long sampleStart = (sampled) ? System.nanoTime() : 0;
         	neighbourgs = solution.generateNeighbours();
+        	if (sampled) {
+        		telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+        	}
         	if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+        		emptyNeighbourhoods.incrementAndGet();
+        		if (telemetry != null) {
+        			telemetry.iteration(0, false, bestCurrentSolution.getCost());
+        		}
+        		if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+        			break;
+        		}
 				continue;
 			}
         	if (generator.nextDouble() < probability) {
@@ -128,48 +309,104 @@ public class MarginalLossComputer {
         	} else {
         		solution = neighbourgs.get(generator.nextInt(neighbourgs.size()));
         	}
-        	if (solution.cost < bestCurrentSolution.cost) {
+        	if (solution.getCost() < bestCurrentSolution.getCost()) {
         		bestCurrentSolution = solution;
-        	}   
+        		best.offer(solution);
+        		lastImprovement = currentTime;
+        		sinceImprovement = 0;
+        	} else {
+        		sinceImprovement++;
+        	}
+        	if (telemetry != null) {
+        		telemetry.iteration(neighbourgs.size(), true, bestCurrentSolution.getCost());
+        	}
         }
         return bestCurrentSolution;
 	}
 
 	/* performs a simmulated annealing, the temperature is decreased linearly at each iteration
 	 * to be equal to temperatureInit on the first one and temperatureEnd on the last one (approximately)
-	 * 
+	 * every polishPeriod iterations, the routes of the current solution are polished (see Solution.polishRoutes)
 	 */
 	private Solution simulatedAnnealing(Solution solution, double temperatureInit, 
-			double temperatureEnd, long timeLimit) {
+			double temperatureEnd, long timeLimit, SearchTelemetry telemetry, Watchdog.BestSoFar best) {
+		int iterations = 0;
 		Random generator = new Random();
 		Solution newSol, bestCurrentSolution = solution, bestNeighborhoodSol;
 		double temperature = temperatureInit, diffScore;
 		long startTime = System.currentTimeMillis(), deltaTime = timeLimit - startTime;
 		ArrayList<Solution> neighbourgs;
+		boolean accepted, stopOnPlateau = this.stopOnPlateau;
+		long lastImprovement = startTime;
+		int sinceImprovement = 0;
+		double bestCost = solution.getCost();
+		if (telemetry != null) {
+			telemetry.begin(solution);
+		}
 				
 		for (double currentTime = System.currentTimeMillis(), fractionTimeLeft; currentTime < timeLimit; currentTime = System.currentTimeMillis()) {
+			if (bestCurrentSolution.getCost() < bestCost) {  // the last iteration improved the best solution
+				bestCost = bestCurrentSolution.getCost();
+				lastImprovement = (long) currentTime;
+				sinceImprovement = 0;
+			} else if (stopOnPlateau && converged(sinceImprovement++, startTime, lastImprovement, (long) currentTime)) {
+				break;
+			}
 			fractionTimeLeft = (timeLimit - currentTime) / deltaTime;
 			temperature = temperatureInit * fractionTimeLeft + temperatureEnd * (1-fractionTimeLeft); // update the temperature 
 					
+			boolean sampled = telemetry != null && telemetry.sampling();
+			long sampleStart = (sampled) ? System.nanoTime() : 0;
 			neighbourgs = solution.generateNeighbours();
+			if (sampled) {
+				telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+			}
 			if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+				emptyNeighbourhoods.incrementAndGet();
+				if (telemetry != null) {
+					telemetry.iteration(0, false, bestCurrentSolution.getCost());
+				}
+				if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+					break;
+				}
 				continue;
 			}
 			bestNeighborhoodSol = Collections.min(neighbourgs);
-			if (bestNeighborhoodSol.cost < bestCurrentSolution.cost) {
+			if (bestNeighborhoodSol.getCost() < bestCurrentSolution.getCost()) {
 	    		bestCurrentSolution = bestNeighborhoodSol;
+	    		best.offer(bestNeighborhoodSol);
 	    	}
 			newSol = neighbourgs.get(generator.nextInt(neighbourgs.size())); // pick random solution
 			
-			diffScore = newSol.cost - solution.cost;
-			if (diffScore <= 0) {
-				solution = newSol;
-			} else if (generator.nextDouble() < Math.exp(- diffScore / temperature)) { // accept with a probability that decreases with the temperature
-				// and that is smaller the worse the new solution is
+			diffScore = newSol.getCost() - solution.getCost();
+			accepted = diffScore <= 0 || generator.nextDouble() < Math.exp(- diffScore / temperature); // accept with a probability that
+			// decreases with the temperature and that is smaller the worse the new solution is
+			if (accepted) {
 				solution = newSol;
 			}
+			
+			if (polishPeriod > 0 && ++iterations % polishPeriod == 0) {
+				solution = solution.polishRoutes();
+				if (solution.getCost() < bestCurrentSolution.getCost()) {
+					bestCurrentSolution = solution;
+					best.offer(solution);
+				}
+			}
+			if (telemetry != null) {
+				telemetry.iteration(neighbourgs.size(), accepted, bestCurrentSolution.getCost());
+			}
         }
 
         return bestCurrentSolution;
 	}
+	
+	/*
+	 * return true if a search that started at start can stop at now: its best cost didn't improve since lastImprovement,
+	 * for plateauIterations iterations and for plateauFactor times the time it took to get there. A search that keeps
+	 * finding better solutions runs until its time limit
+	 */
+	private boolean converged(int sinceImprovement, long start, long lastImprovement, long now) {
+		return plateauFactor > 0 && sinceImprovement >= plateauIterations
+				&& now - lastImprovement >= plateauFactor * (lastImprovement - start);
+	}
 }
@@ -0,0 +1,138 @@
+package auction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import common.RoutingTable;
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+/*
+ * Bayesian model of the opponent's fleet: a posterior over the hypotheses (c, k, g) "the opponent has a vehicle whose
+ * home city is c and whose cost per km is k, and he adds a gain g to his marginal cost", updated with the opponent's
+ * bid after every auction.
+ * If the opponent has a vehicle at c, his marginal cost for a task is at most k times the distance from c (or from
+ * one of the cities of the tasks he already won) to the pickup plus the length of the task: his bid is that cost plus
+ * g with a gaussian noise, or it is lower, uniformly, because another of his vehicles is closer to the task.
+ * That makes the hypotheses of every city that could host one of his vehicles likely, not only the closest one.
+ * The distances are precomputed so an update only costs a few operations per hypothesis.
+ */
+class OpponentModel {
+	private final List<City> cities;
+	private final double[][] distance; // distance between the cities by index in cities
+	private final int maxCostPerKm; // the costs per km of the hypotheses go from 1 to maxCostPerKm
+	private final double[] gain; // the gains of the hypotheses
+	private final double[][][] logPosterior; // logPosterior[c][k-1][g] is the log of the (unnormalized) posterior of (c, k, g)
+	private final double noise; // standard deviation of the opponent's bid around the bid predicted by a hypothesis
+	private final double closerVehicleProba; // probability that another vehicle than the one of a hypothesis bids
+
+	/*
+	 * model with a uniform prior over the cities, the costs per km from 1 to maxCostPerKm and nbrGains gains between 0
+	 * and maxGain
+	 */
+	OpponentModel(List<City> cities, int maxCostPerKm, double maxGain, int nbrGains, double noise,
+			double closerVehicleProba) {
+		this.cities = cities;
+		this.noise = noise;
+		this.closerVehicleProba = closerVehicleProba;
+		RoutingTable routing = RoutingTable.of(cities.get(0));
+		distance = new double[cities.size()][cities.size()];
+		for (int i = 0; i < cities.size(); i++) {
+			for (int j = 0; j < cities.size(); j++) {
+				distance[i][j] = routing.distance(cities.get(i), cities.get(j));
+			}
+		}
+		this.maxCostPerKm = maxCostPerKm;
+		gain = new double[nbrGains];
+		for (int g = 0; g < nbrGains; g++) {
+			gain[g] = (nbrGains == 1) ? 0 : g * maxGain / (nbrGains - 1);
+		}
+		logPosterior = new double[cities.size()][maxCostPerKm][nbrGains];
+	}
+
+	/*
+	 * updates the posterior with the bid the opponent made for task, oppTasks are the tasks he had won before that
+	 * auction
+	 */
+	void update(Task task, long oppBid, List<Task> oppTasks) {
+		int pickup = cities.indexOf(task.pickupCity), delivery = cities.indexOf(task.deliveryCity);
+		double taskDistance = distance[pickup][delivery];
+
+		// the opponent's vehicles go through the cities of his tasks, a vehicle there reaches the pickup from them
+		double fromRoutes = Double.POSITIVE_INFINITY;
+		for (Task oppTask: oppTasks) {
+			fromRoutes = Math.min(fromRoutes, distance[cities.indexOf(oppTask.pickupCity)][pickup]);
+			fromRoutes = Math.min(fromRoutes, distance[cities.indexOf(oppTask.deliveryCity)][pickup]);
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < logPosterior.length; c++) {
+			double toPickup = Math.min(distance[c][pickup], fromRoutes);
+			for (int k = 1; k <= maxCostPerKm; k++) {
+				double[] posterior = logPosterior[c][k - 1];
+				for (int g = 0; g < gain.length; g++) {
+					double predicted = k * (toPickup + taskDistance) + gain[g];
+					double error = (oppBid - predicted) / noise;
+					double likelihood = (1 - closerVehicleProba) * Math.exp(-0.5 * error * error) / (noise * Math.sqrt(2 * Math.PI));
+					if (oppBid < predicted) {
+						likelihood += closerVehicleProba / Math.max(predicted, 1);
+					}
+					posterior[g] += Math.log(Math.max(likelihood, Double.MIN_NORMAL));
+					max = Math.max(max, posterior[g]);
+				}
+			}
+		}
+		for (double[][] cityPosterior: logPosterior) {  // keeps the values around 0
+			for (double[] posterior: cityPosterior) {
+				for (int g = 0; g < gain.length; g++) {
+					posterior[g] -= max;
+				}
+			}
+		}
+	}
+
+	/*
+	 * return the indexes (in cities) of the nbrVehicles most probable home cities of the opponent's vehicles, the most
+	 * probable first
+	 */
+	ArrayList<Integer> mostProbableCities(int nbrVehicles) {
+		double[] cityPosterior = new double[logPosterior.length];
+		for (int c = 0; c < logPosterior.length; c++) {
+			for (double[] posterior: logPosterior[c]) {
+				for (double logProba: posterior) {
+					cityPosterior[c] += Math.exp(logProba);
+				}
+			}
+		}
+		ArrayList<Integer> fleet = new ArrayList<Integer>(nbrVehicles);
+		for (int i = 0; i < Math.min(nbrVehicles, cityPosterior.length); i++) {
+			int best = -1;
+			for (int c = 0; c < cityPosterior.length; c++) {
+				if (!fleet.contains(c) && (best == -1 || cityPosterior[c] > cityPosterior[best])) {
+					best = c;
+				}
+			}
+			fleet.add(best);
+		}
+		return fleet;
+	}
+
+	// return the most probable cost per km of the opponent's vehicles
+	int mostProbableCostPerKm() {
+		int best = 1;
+		double bestPosterior = -1;
+		for (int k = 1; k <= maxCostPerKm; k++) {
+			double posterior = 0;
+			for (int c = 0; c < logPosterior.length; c++) {
+				for (double logProba: logPosterior[c][k - 1]) {
+					posterior += Math.exp(logProba);
+				}
+			}
+			if (posterior > bestPosterior) {
+				bestPosterior = posterior;
+				best = k;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,39 @@
+package auction;
+
+/*
+ * Splits the time of a bid between the search for our solution and the one for the opponent's, that run at the same
+ * time: each of them gets a share of the bid time that depends on its volatility, the exponential average of how much
+ * its searches improved the solution they started from (see MarginalLossComputer.getLastGain). The most volatile one
+ * gets the whole time, the other one proportionally less but never less than minShare: a search whose result barely
+ * differs from the insertion of the new task in the last solution doesn't need the whole time, and askPrice returns
+ * once both are over. Both get the whole time until they were measured.
+ */
+class SearchBudget {
+	private final double minShare;
+	private final double smoothing; // weight of the last search in the averages
+	private double volatility = -1, oppVolatility = -1; // -1 until measured
+
+	SearchBudget(double minShare, double smoothing) {
+		this.minShare = minShare;
+		this.smoothing = smoothing;
+	}
+
+	// the time limit of the search for our agent (or for the opponent) of a bid that started at start and lasts time
+	long timeLimit(boolean forOurAgent, long start, long time) {
+		double own = (forOurAgent) ? volatility : oppVolatility, other = (forOurAgent) ? oppVolatility : volatility;
+		if (own < 0 || other < 0 || own >= other) {
+			return start + time;
+		}
+		double share = minShare + (1 - minShare) * own / other;
+		return start + (long) (share * time);
+	}
+
+	// records the gain of the last search for our agent (or for the opponent)
+	void record(boolean forOurAgent, double gain) {
+		if (forOurAgent) {
+			volatility = (volatility < 0) ? gain : (1 - smoothing) * volatility + smoothing * gain;
+		} else {
+			oppVolatility = (oppVolatility < 0) ? gain : (1 - smoothing) * oppVolatility + smoothing * gain;
+		}
+	}
+}
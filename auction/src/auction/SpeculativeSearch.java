@@ -0,0 +1,165 @@
+package auction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import common.Solution;
+import logist.task.Task;
+
+/*
+ * Background search run while the agent waits: while the opponent computes his bid and between two auctions. It
+ * cycles through short slices of search on: our tasks, an alternative set of tasks (e.g. the tasks we have if we lose
+ * the auction being run) and our tasks plus one of the most probable next tasks (each of them in turn). askPrice then
+ * only has to look up the solution with the task it is asked about and to refine it shortly.
+ * The worker is paused during askPrice, auctionResult and plan, so the MarginalLossComputer is never used by
+ * the worker and the agent at the same time.
+ */
+class SpeculativeSearch implements Runnable {
+	private final MarginalLossComputer mlc;
+	private final List<TaskProba> likelyTasks; // the most probable tasks, the most probable first
+	private final ArrayList<Task> likelyTasksAsTasks; // the same tasks as Task objects to give them to the mlc
+	private final long sliceTime; // duration of a slice of search in milliseconds
+	private final Thread thread;
+
+	// what we search on, see resume
+	private ArrayList<Task> tasks;
+	private ArrayList<Task> alternativeTasks;
+	private Solution current;
+	private Solution alternative;
+	private Solution[] withTask; // withTask[i] is the best solution found for tasks plus likelyTasks[i]
+
+	private boolean running = false; // true while the worker may start new slices
+	private boolean searching = false; // true during a slice
+	private int nextSlice = 0; // 0 for our tasks, 1 for the alternative tasks, 2 + i for our tasks plus likelyTasks[i]
+
+	SpeculativeSearch(MarginalLossComputer mlc, List<TaskProba> likelyTasks, long sliceTime) {
+		this.mlc = mlc;
+		this.likelyTasks = likelyTasks;
+		this.sliceTime = sliceTime;
+		likelyTasksAsTasks = new ArrayList<Task>(likelyTasks.size());
+		for (TaskProba tp: likelyTasks) {
+			likelyTasksAsTasks.add(new Task(-1, tp.pickupCity, tp.deliveryCity, 0, tp.weight));
+		}
+
+		thread = new Thread(this, "speculative-search");
+		thread.setDaemon(true);  // must not keep the platform alive once the game is over
+		thread.start();
+	}
+
+	/*
+	 * starts searching on our tasks and on the alternative tasks (may be null), current and alternative are our best
+	 * solutions for those tasks so far (may be null). The solutions precomputed with the likely tasks are kept when
+	 * our tasks didn't change since the last call
+	 */
+	synchronized void resume(ArrayList<Task> tasks, Solution current, ArrayList<Task> alternativeTasks, Solution alternative) {
+		if (withTask == null || !tasks.equals(this.tasks)) {
+			withTask = new Solution[likelyTasks.size()];
+		}
+		this.tasks = new ArrayList<Task>(tasks);
+		this.alternativeTasks = (alternativeTasks == null) ? null : new ArrayList<Task>(alternativeTasks);
+		this.current = current;
+		this.alternative = alternative;
+		nextSlice = 0;
+		running = true;
+		notifyAll();
+	}
+
+	// stops the search, return once the current slice is over
+	synchronized void pause() {
+		running = false;
+		while (searching) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// ends the worker once the current slice is over, the search cannot be resumed afterwards
+	void stop() {
+		pause();
+		thread.interrupt();
+	}
+
+	// return our best solution for the tasks given to resume (null if we have none)
+	synchronized Solution getCurrent() {
+		return current;
+	}
+
+	// return our best solution for the alternative tasks given to resume (null if we have none)
+	synchronized Solution getAlternative() {
+		return alternative;
+	}
+
+	/*
+	 * return the best solution found for our tasks plus a task with the same cities as task, null if that task was
+	 * not among the likely ones or if we didn't search on it yet
+	 */
+	synchronized Solution lookup(Task task) {
+		for (int i = 0; withTask != null && i < likelyTasks.size(); i++) {
+			if (likelyTasks.get(i).pickupCity == task.pickupCity && likelyTasks.get(i).deliveryCity == task.deliveryCity) {
+				return withTask[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			int slice;
+			ArrayList<Task> sliceTasks;
+			Solution start;
+			synchronized (this) {
+				while (!running) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				slice = nextSlice;
+				nextSlice = (nextSlice + 1) % (likelyTasks.size() + 2);
+				if (slice == 0) {
+					sliceTasks = tasks;
+					start = current;
+				} else if (slice == 1) {
+					sliceTasks = alternativeTasks;
+					start = alternative;
+				} else {
+					sliceTasks = new ArrayList<Task>(tasks);
+					sliceTasks.add(likelyTasksAsTasks.get(slice - 2));
+					start = (withTask[slice - 2] != null) ? withTask[slice - 2] : current;
+				}
+				if (sliceTasks == null || sliceTasks.size() == 0) {  // nothing to search on, we go to the next slice
+					continue;
+				}
+				searching = true;
+			}
+
+			// the search is done without holding the lock so that pause can stop the next slices meanwhile
+			Solution result = null;
+			try {
+				result = mlc.getSolution(sliceTasks, start, System.currentTimeMillis() + sliceTime, true);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+
+			synchronized (this) {
+				if (result != null) {
+					if (slice == 0) {
+						current = (current == null || result.getCost() < current.getCost()) ? result : current;
+					} else if (slice == 1) {
+						alternative = (alternative == null || result.getCost() < alternative.getCost()) ? result : alternative;
+					} else if (withTask[slice - 2] == null || result.getCost() < withTask[slice - 2].getCost()) {
+						withTask[slice - 2] = result;
+					}
+				}
+				searching = false;
+				notifyAll();
+			}
+		}
+	}
+}
@@ -1,5 +1,11 @@
 package auction;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
 import logist.topology.Topology.City;
 
 /*
@@ -19,6 +25,22 @@ public class TaskProba implements Comparable<TaskProba>{
 		this.weight = weight;
 	}
 	
+	/* return the n most probable tasks of the topology, the most probable first */
+	static List<TaskProba> mostProbable(Topology topology, TaskDistribution distribution, int n) {
+        PriorityQueue<TaskProba> pq = new PriorityQueue<TaskProba>();
+        for (City pickup: topology.cities()) {
+        	for (City deliver: topology.cities()) {
+        		pq.add(new TaskProba(distribution.probability(pickup, deliver), pickup, deliver, distribution.weight(pickup, deliver)));
+        	}
+        }
+        
+        List<TaskProba> tasks = new ArrayList<TaskProba>(n);
+        for (int i = 0; i < n && !pq.isEmpty(); i++) {
+        	tasks.add(pq.poll());
+        }
+        return tasks;
+	}
+	
 	/* return 1 if this proba is smaller than tp2 troba, -1 if bigger and 0 if they are equal */
 	@Override
 	public int compareTo(TaskProba tp2) {
@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import deliberative.DeliberativeAgent;
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import tools.Output;
+
+/*
+ * Time the deliberative agent takes to plan the delivery of a number of tasks with one vehicle, for every algorithm.
+ * BFS explores every state, so above 8 tasks a single plan takes too long to be measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeliberativePlanBenchmark {
+	@Param({ "ASTAR", "BFS", "NAIVE" })
+	String algorithm;
+
+	@Param({ "4", "6", "8" })
+	int nbrTasks;
+
+	@Param({ "england" })
+	String topologyName;
+
+	private DeliberativeAgent deliberative;
+	private Vehicle vehicle;
+	private TaskSet tasks;
+	private PrintStream out;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Topology topology = Fixtures.topology(topologyName);
+		List<Vehicle> vehicles = Fixtures.vehicles(topology, 1, 30, 5, 1);
+		vehicle = vehicles.get(0);
+		tasks = Fixtures.taskSet(Fixtures.tasks(topology, nbrTasks, 3, 2));
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("algorithm", algorithm);
+		deliberative = new DeliberativeAgent();
+		deliberative.setup(topology, Fixtures.distribution(topology, 3), Fixtures.agent(vehicles, properties));
+		out = Output.silence();  // plan prints its own timing
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	@Benchmark
+	public Plan plan() {
+		return deliberative.plan(vehicle, tasks);
+	}
+}
@@ -0,0 +1,162 @@
+package benchmark;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import logist.agent.Agent;
+import logist.agent.AgentStatistics;
+import logist.config.Parsers;
+import logist.simulation.Vehicle;
+import logist.task.DefaultTaskDistribution;
+import logist.task.Task;
+import logist.task.TaskDistribution;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * Everything the benchmarks need to run the agents outside of the platform: the bundled topologies, task
+ * distributions, vehicles and agents built from a seed, and synthetic tasks. Nothing is read but the topology XMLs,
+ * found in the directory given by the system property topology.dir (../config/topology by default, the benchmarks
+ * being run from the benchmark directory).
+ */
+final class Fixtures {
+	static final String[] TOPOLOGIES = { "england", "france", "switzerland", "the_netherlands" };
+
+	private static final Map<String, Topology> topologies = new HashMap<String, Topology>();
+
+	private Fixtures() {}
+
+	// the bundled topology of the given name, parsed once
+	static synchronized Topology topology(String name) {
+		Topology topology = topologies.get(name);
+		if (topology == null) {
+			String directory = System.getProperty("topology.dir", ".." + File.separator + "config" + File.separator + "topology");
+			try {
+				topology = Parsers.parseTopology(directory + File.separator + name + ".xml");
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Cannot read the topology " + name + " from " + directory, e);
+			}
+			topologies.put(name, topology);
+		}
+		return topology;
+	}
+
+	/*
+	 * task distribution drawn like the one of the configurations of the reactive and deliberative agents: uniform
+	 * probabilities, rewards proportional to the distance, constant weight and a probability of no task between 0.2
+	 * and 0.4 in every city
+	 */
+	static TaskDistribution distribution(Topology topology, long seed) {
+		Random random = new Random(seed);
+		int n = topology.size();
+		double[][] probability = new double[n][n], reward = new double[n][n], weight = new double[n][n];
+		double[] noTask = new double[n];
+		for (City from: topology) {
+			for (City to: topology) {
+				probability[from.id][to.id] = (from == to) ? 0 : random.nextDouble();
+				reward[from.id][to.id] = 10 * from.distanceTo(to);
+				weight[from.id][to.id] = 3;
+			}
+			noTask[from.id] = 0.2 + 0.2 * random.nextDouble();
+		}
+		return new DefaultTaskDistribution(topology, random, probability, reward, weight, noTask);
+	}
+
+	// nbrTasks tasks between random distinct cities, of weight 1 to maxWeight
+	static ArrayList<Task> tasks(Topology topology, int nbrTasks, int maxWeight, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Task> tasks = new ArrayList<Task>(nbrTasks);
+		for (int i = 0; i < nbrTasks; i++) {
+			City pickup = topology.randomCity(random), delivery;
+			do {
+				delivery = topology.randomCity(random);
+			} while (delivery == pickup);
+			tasks.add(new Task(i, pickup, delivery, (long) (10 * pickup.distanceTo(delivery)), 1 + random.nextInt(maxWeight)));
+		}
+		return tasks;
+	}
+
+	static TaskSet taskSet(List<Task> tasks) {
+		return TaskSet.create(tasks.toArray(new Task[tasks.size()]));
+	}
+
+	// nbrVehicles vehicles with random home cities, all with the given capacity and cost per km
+	static List<Vehicle> vehicles(Topology topology, int nbrVehicles, int capacity, int costPerKm, long seed) {
+		Random random = new Random(seed);
+		List<Vehicle> vehicles = new ArrayList<Vehicle>(nbrVehicles);
+		for (int i = 0; i < nbrVehicles; i++) {
+			vehicles.add(new FixedVehicle(i, topology.randomCity(random), capacity, costPerKm));
+		}
+		return vehicles;
+	}
+
+	// agent owning vehicles whose properties are the given ones, the others having their default value
+	static Agent agent(List<Vehicle> vehicles, Map<String, Object> properties) {
+		return new FixedAgent(vehicles, properties);
+	}
+
+	/*
+	 * vehicle that stays in its home city without any task
+	 */
+	private static class FixedVehicle implements Vehicle {
+		private final int id, capacity, costPerKm;
+		private final City home;
+
+		FixedVehicle(int id, City home, int capacity, int costPerKm) {
+			this.id = id;
+			this.home = home;
+			this.capacity = capacity;
+			this.costPerKm = costPerKm;
+		}
+
+		public int id() { return id; }
+		public String name() { return "Vehicle " + (id + 1); }
+		public int capacity() { return capacity; }
+		public City homeCity() { return home; }
+		public double speed() { return 90; }
+		public int costPerKm() { return costPerKm; }
+		public City getCurrentCity() { return home; }
+		public TaskSet getCurrentTasks() { return TaskSet.create(new Task[0]); }
+		public long getReward() { return 0; }
+		public long getDistanceUnits() { return 0; }
+		public double getDistance() { return 0; }
+		public Color color() { return Color.BLUE; }
+	}
+
+	/*
+	 * agent without statistics that only answers readProperty
+	 */
+	private static class FixedAgent implements Agent {
+		private final List<Vehicle> vehicles;
+		private final Map<String, Object> properties;
+
+		FixedAgent(List<Vehicle> vehicles, Map<String, Object> properties) {
+			this.vehicles = vehicles;
+			this.properties = properties;
+		}
+
+		public int id() { return 0; }
+		public List<Vehicle> vehicles() { return vehicles; }
+		public TaskSet getTasks() { return null; }
+
+		public <T> T readProperty(String paramName, Class<T> clazz, T default_) {
+			Object value = properties.get(paramName);
+			return (value == null) ? default_ : clazz.cast(value);
+		}
+
+		public String name() { return "benchmark"; }
+		public long getTotalDistanceUnits() { return 0; }
+		public double getTotalDistance() { return 0; }
+		public long getTotalCost() { return 0; }
+		public long getTotalReward() { return 0; }
+		public long getTotalProfit() { return 0; }
+		public int getTotalTasks() { return 0; }
+		public int compareTo(AgentStatistics other) { return 0; }
+	}
+}
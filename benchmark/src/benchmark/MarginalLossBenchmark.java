@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import auction.MarginalLossComputer;
+import logist.agent.Agent;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology;
+
+/*
+ * Quality of the solution the auction agents' search returns at its deadline: every invocation searches from scratch
+ * until the deadline and the mean cost of the solutions found is reported as the secondary result "cost". The time
+ * is only there to check that the deadline is respected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class MarginalLossBenchmark {
+	@Param({ "50", "200", "500" })
+	long deadline; // in ms
+
+	@Param({ "10", "20", "30" })
+	int nbrTasks;
+
+	@Param({ "SIMULATEDANNEALING", "TAKERANDOMWITHP" })
+	String algorithm;
+
+	@Param({ "england" })
+	String topologyName;
+
+	private ArrayList<Task> tasks;
+	private Agent agent;
+	private MarginalLossComputer computer;
+
+	/*
+	 * the mean cost of the solutions found: JMH sums the events over the iterations (of one invocation each in this
+	 * mode), so every iteration counts its cost divided by the number of iterations
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Quality {
+		public double cost;
+		private double weight;
+
+		@Setup(Level.Iteration)
+		public void reset(IterationParams iteration) {
+			cost = 0;
+			weight = 1. / iteration.getCount();
+		}
+
+		void add(double solutionCost) {
+			cost += weight * solutionCost;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Topology topology = Fixtures.topology(topologyName);
+		tasks = Fixtures.tasks(topology, nbrTasks, 6, 2);
+		List<Vehicle> vehicles = Fixtures.vehicles(topology, 2, 30, 5, 1);
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("algorithm", algorithm);
+		agent = Fixtures.agent(vehicles, properties);
+	}
+
+	@Setup(Level.Invocation)
+	public void newComputer() {
+		computer = new MarginalLossComputer(agent);  // it would otherwise start from its last solution
+	}
+
+	@TearDown(Level.Invocation)
+	public void shutdownComputer() {
+		computer.shutdown();  // its search threads would pile up otherwise
+	}
+
+	@Benchmark
+	public double getSolution(Quality quality) {
+		double cost = computer.getSolution(tasks, System.currentTimeMillis() + deadline, true).getCost();
+		quality.add(cost);
+		return cost;
+	}
+}
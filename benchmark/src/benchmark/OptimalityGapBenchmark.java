@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import auction.MarginalLossComputer;
+import common.ExactSolver;
+import common.ProblemInstance;
+import common.Solution;
+import logist.agent.Agent;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology;
+
+/*
+ * Distance to the optimum of the solution the auction agents' search returns at its deadline, on problems small
+ * enough for the exact solver: the optimum is computed once per trial and every invocation searches from scratch
+ * until the deadline, the mean gap (cost / optimal cost - 1, in percent) is reported as the secondary result "gap".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class OptimalityGapBenchmark {
+	private static final long EXACT_TIME = 60000; // in ms, the exact solver must finish before that
+
+	@Param({ "20", "50" })
+	long deadline; // in ms
+
+	@Param({ "6", "8", "10" })
+	int nbrTasks;
+
+	@Param({ "SIMULATEDANNEALING", "TAKERANDOMWITHP" })
+	String algorithm;
+
+	@Param({ "england" })
+	String topologyName;
+
+	private ArrayList<Task> tasks;
+	private Agent agent;
+	private double optimalCost;
+	private MarginalLossComputer computer;
+
+	// the mean gap of the solutions found, summed over the iterations like MarginalLossBenchmark.Quality
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Gap {
+		public double gap;
+		private double weight;
+
+		@Setup(Level.Iteration)
+		public void reset(IterationParams iteration) {
+			gap = 0;
+			weight = 1. / iteration.getCount();
+		}
+
+		void add(double solutionGap) {
+			gap += weight * solutionGap;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Topology topology = Fixtures.topology(topologyName);
+		tasks = Fixtures.tasks(topology, nbrTasks, 6, 2);
+		List<Vehicle> vehicles = Fixtures.vehicles(topology, 2, 30, 5, 1);
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("algorithm", algorithm);
+		agent = Fixtures.agent(vehicles, properties);
+
+		ProblemInstance problem = new ProblemInstance(tasks, vehicles);
+		Solution optimum = new ExactSolver(problem).solve(new Solution(problem, Solution.Init.CHEAPESTINSERTION),
+				System.currentTimeMillis() + EXACT_TIME);
+		if (optimum == null) {
+			throw new IllegalStateException("The exact solver could not solve " + nbrTasks + " tasks in " + EXACT_TIME + " ms");
+		}
+		optimalCost = optimum.getCost();
+	}
+
+	@Setup(Level.Invocation)
+	public void newComputer() {
+		computer = new MarginalLossComputer(agent);  // it would otherwise start from its last solution
+	}
+
+	@TearDown(Level.Invocation)
+	public void shutdownComputer() {
+		computer.shutdown();
+	}
+
+	@Benchmark
+	public double getSolution(Gap gap) {
+		double cost = computer.getSolution(tasks, System.currentTimeMillis() + deadline, true).getCost();
+		gap.add(100 * (cost / optimalCost - 1));
+		return cost;
+	}
+}
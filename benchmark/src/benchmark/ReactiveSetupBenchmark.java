@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import logist.agent.Agent;
+import logist.simulation.Vehicle;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import reactive.ReactiveAgent;
+import tools.Output;
+
+/*
+ * Time of the setup of the reactive agent, that is of the value iteration over all its states, on every topology
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReactiveSetupBenchmark {
+	@Param({ "england", "france", "switzerland", "the_netherlands" })
+	String topologyName;
+
+	@Param({ "0.95" })
+	double discount;
+
+	private Topology topology;
+	private TaskDistribution distribution;
+	private Agent agent;
+	private PrintStream out;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		topology = Fixtures.topology(topologyName);
+		distribution = Fixtures.distribution(topology, 3590420242192152424L);
+		List<Vehicle> vehicles = Fixtures.vehicles(topology, 1, 30, 5, 1);
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("discount-factor", discount);
+		agent = Fixtures.agent(vehicles, properties);
+		out = Output.silence();  // the setup prints its own timing
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	@Benchmark
+	public ReactiveAgent valueIteration() {
+		ReactiveAgent reactive = new ReactiveAgent();
+		reactive.setup(topology, distribution, agent);
+		return reactive;
+	}
+}
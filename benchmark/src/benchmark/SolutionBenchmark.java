@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import common.ProblemInstance;
+import common.Solution;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology;
+
+/*
+ * Throughput of the two operations the stochastic searches repeat: generating the neighbourhood of a solution (every
+ * neighbour comes with its cost, computed incrementally) and evaluating a solution from scratch (the routes, loads and
+ * cost of every vehicle rebuilt from the order of its tasks, as when a solution is carried over to a new problem)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SolutionBenchmark {
+	@Param({ "10", "30", "50" })
+	int nbrTasks;
+
+	@Param({ "4" })
+	int nbrVehicles;
+
+	@Param({ "england" })
+	String topologyName;
+
+	private ProblemInstance problem;
+	private Solution solution;
+	private int[] sameIndex; // every task keeps its index, see Solution(ProblemInstance, Solution, int[])
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Topology topology = Fixtures.topology(topologyName);
+		ArrayList<Task> tasks = Fixtures.tasks(topology, nbrTasks, 6, 2);
+		List<Vehicle> vehicles = Fixtures.vehicles(topology, nbrVehicles, 30, 5, 1);
+		problem = new ProblemInstance(tasks, vehicles);
+		solution = new Solution(problem, Solution.Init.CHEAPESTINSERTION);
+		sameIndex = new int[nbrTasks];
+		for (int i = 0; i < nbrTasks; i++) {
+			sameIndex[i] = i;
+		}
+	}
+
+	@Benchmark
+	public ArrayList<Solution> generateNeighbours() {
+		return solution.generateNeighbours();
+	}
+
+	@Benchmark
+	public double computeCost() {
+		return new Solution(problem, solution, sameIndex).getCost();
+	}
+}
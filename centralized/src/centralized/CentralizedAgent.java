@@ -7,6 +7,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import common.ElitePool;
+import common.ExactSolver;
+import common.ProblemInstance;
+import common.RoutingTable;
+import common.SearchTelemetry;
+import common.Solution;
+import common.TelemetryLog;
+import common.VisitedSet;
+import common.WarmUp;
+import common.Watchdog;
 import logist.LogistSettings;
 
 import logist.Measures;
@@ -30,7 +41,7 @@ import logist.topology.Topology.City;
 @SuppressWarnings("unused")
 public class CentralizedAgent implements CentralizedBehavior {
 
-    enum Algo { TAKERANDOMWITHP, SIMULATEDANNEALING, STOCHASTICRESTART}
+    enum Algo { TAKERANDOMWITHP, SIMULATEDANNEALING, STOCHASTICRESTART, TABU }
     
     private Topology topology;
     private TaskDistribution distribution;
@@ -39,17 +50,29 @@ public class CentralizedAgent implements CentralizedBehavior {
     private long timeout_setup;
     private long timeout_plan;
     private Algo algorithm;
+    private Solution.Init initialization;
     private double parameter1;
     private double parameter2;
+    private int eliteSize; // number of solutions kept as restart points by the searches with restarts
+    private int neighbourhoodSamples; // number of neighbourhoods generated at each iteration of the tabu search
+    private long emptyNeighbourhoods; // number of search iterations that found no neighbour during the last plan
+    private int exactThreshold; // problems with at most that many tasks are first given to the exact solver
+    private boolean debug; // prints the nextTask array of the solutions we return
+    private int polishPeriod; // number of iterations of the simulated annealing between two polishings of the routes
+    private TelemetryLog telemetryLog; // null unless the agent has the property telemetry
+    private long deadlineMargin; // plan returns that many ms before its timeout, the search stops twice that many ms before
+    private Watchdog watchdog; // runs the search of plan and returns its best solution so far at the deadline
+    private long warmUpTime; // maximal duration of the warm-up at the end of setup in ms, 0 to skip it
     
     @Override
     public void setup(Topology topology, TaskDistribution distribution,
             Agent agent) {
         
+        long start = System.currentTimeMillis();
         // this code is used to get the timeouts
         LogistSettings ls = null;
         try {
-            ls = Parsers.parseSettings("config" + File.separator + "settings_default.xml");
+            ls = Parsers.parseSettings(agent.readProperty("settings", String.class, "config" + File.separator + "settings_default.xml"));
         }
         catch (Exception exc) {
             System.out.println("There was a problem loading the configuration file.");
@@ -68,21 +91,55 @@ public class CentralizedAgent implements CentralizedBehavior {
         case SIMULATEDANNEALING:
         	parameter1 = agent.readProperty("temperature-begin", Double.class, 1000.);
         	parameter2 = agent.readProperty("temperature-end", Double.class, 100.);
+        	polishPeriod = agent.readProperty("polish-period", Integer.class, 200);
         	break;
         case STOCHASTICRESTART:
         	parameter1 = agent.readProperty("probability", Double.class, 0.95);
         	parameter2 = agent.readProperty("threshold", Double.class, 30.);
+        	break;
+        case TABU:
+        	parameter1 = agent.readProperty("tabu-tenure", Double.class, 10.);
+        	parameter2 = agent.readProperty("threshold", Double.class, 300.);
+        	neighbourhoodSamples = agent.readProperty("neighbourhood-samples", Integer.class, 10);
+        	break;
         }
+        eliteSize = agent.readProperty("elite-size", Integer.class, 20);
+        exactThreshold = Math.min(agent.readProperty("exact-threshold", Integer.class, 10), ExactSolver.MAX_TASKS);
+        
+        debug = agent.readProperty("debug", Boolean.class, false);
+        telemetryLog = TelemetryLog.of(agent);
+        deadlineMargin = agent.readProperty("deadline-margin", Integer.class, 10);
+        watchdog = new Watchdog("plan-search");
+        initialization = Solution.Init.valueOf(agent.readProperty("initialization", String.class, "CheapestInsertion").toUpperCase());
         
         this.topology = topology;
         this.distribution = distribution;
+        
+        warmUpTime = agent.readProperty("warm-up", Integer.class, 1000);
+        warmUp(topology.cities(), agent.vehicles(), WarmUp.timeLimit(start, timeout_setup, warmUpTime));
+    }
+    
+    /*
+     * runs the search of plan on synthetic problems on the cities (see common.WarmUp) until time_limit so that the JIT
+     * compiled it before plan is called, the solutions found are thrown away
+     */
+    private void warmUp(List<City> cities, List<Vehicle> vehicles, long time_limit) {
+    	WarmUp warmUp = new WarmUp(cities, vehicles);
+    	while (System.currentTimeMillis() < time_limit) {
+    		ArrayList<Task> list = warmUp.nextTasks();
+    		Solution initial = new Solution(new ProblemInstance(list, vehicles), initialization);
+    		search(initial, Math.min(time_limit, System.currentTimeMillis() + 10 * list.size()),
+    				new Watchdog.BestSoFar(initial), true);
+    	}
+    	emptyNeighbourhoods = 0;
     }
 
     @Override
     public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
-        long time_limit = System.currentTimeMillis() + (long) (0.999*timeout_plan) - 25;  
-        // we use a 0.999 factor margin for safety and a 20 ms safety margin for computing
-        // the plan
+        long deadline = System.currentTimeMillis() + timeout_plan - deadlineMargin;
+        // the search stops by itself deadlineMargin ms before the deadline, if it is late the watchdog returns its best
+        // solution so far at the deadline, the remaining margin is for computing the plans
+        final long time_limit = deadline - deadlineMargin;
         
         ArrayList<Task> list = new ArrayList<Task>();
         for (Task task: tasks) {
@@ -90,44 +147,112 @@ public class CentralizedAgent implements CentralizedBehavior {
         }
         this.tasks = list;
         this.vehicles = vehicles;
+        emptyNeighbourhoods = 0;
         
-        Solution solution = new Solution(list, vehicles);
+        final Solution initial = new Solution(new ProblemInstance(list, vehicles), initialization);
         if (list.size() == 0) {  // if we call generateNeighbours for a task with no solutions
         	// we will loop infinitely
-        	return solution.getPlans(list);
+        	return initial.getPlans(list, debug);
+        }
+        
+        final Watchdog.BestSoFar best = new Watchdog.BestSoFar(initial);
+        Solution solution = watchdog.call(new Callable<Solution>() {
+        	@Override
+        	public Solution call() {
+        		return search(initial, time_limit, best, false);
+        	}
+        }, best, deadline);
+        return solution.getPlans(list, debug);
+    }
+    
+    /*
+     * return the best solution we find from solution before time_limit, each better solution found on the way is
+     * published in best. The searches of the warm-up print nothing and are recorded in the phase warm-up
+     */
+    private Solution search(Solution solution, long time_limit, Watchdog.BestSoFar best, boolean warmUp) {
+        if (solution.getProblem().nbrTasks() <= exactThreshold) {
+        	/* small problem, we try to solve it optimally with half of the time we have, if the exact solver
+        	 * can't finish on time we keep the other half for the stochastic search */
+        	long exactTimeLimit = (System.currentTimeMillis() + time_limit) / 2;
+        	Solution optimum = new ExactSolver(solution.getProblem()).solve(solution, exactTimeLimit);
+        	if (optimum != null) {
+        		if (!warmUp) {
+        			System.out.println(optimum.getCost() + " (optimal)");
+        		}
+        		best.offer(optimum);
+        		return optimum;
+        	}
+        	if (!warmUp) {
+        		System.out.println("The exact solver ran out of time, falling back to " + algorithm);
+        	}
         }
         
+        SearchTelemetry telemetry = (telemetryLog == null) ? null : telemetryLog.start((warmUp) ? "warm-up" : "plan", algorithm.toString(),
+        		solution.getProblem().nbrTasks());
+        if (telemetry != null) {
+        	telemetry.begin(solution);
+        }
         switch (algorithm) {
         case TAKERANDOMWITHP:
-        	solution = stochasticSearchTakeRandomWithP(solution, parameter1, time_limit);
+        	solution = stochasticSearchTakeRandomWithP(solution, parameter1, time_limit, telemetry, best);
         	break;
         case SIMULATEDANNEALING:
-        	solution = simulatedAnnealing(solution, parameter1, parameter2, time_limit);
+        	solution = simulatedAnnealing(solution, parameter1, parameter2, time_limit, telemetry, best);
         	break;
         case STOCHASTICRESTART:
-        	solution = stochasticSearchRestart(solution, parameter1, (int) parameter2, time_limit);
+        	solution = stochasticSearchRestart(solution, parameter1, (int) parameter2, time_limit, telemetry, best);
+        	break;
+        case TABU:
+        	solution = tabuSearch(solution, (int) parameter1, (int) parameter2, time_limit, telemetry, best);
         	break;
         }
         
-		System.out.println(solution.cost);
-        List<Plan> plans = solution.getPlans(list);
-        return plans;
+        solution = solution.polishRoutes();  // the searches seldom end on a local optimum of the order of the tasks
+        best.offer(solution);
+		if (!warmUp) {
+			System.out.println(solution.getCost());
+			System.out.println("Iterations without neighbours: " + emptyNeighbourhoods);
+		}
+		if (telemetry != null) {
+			telemetry.end(solution);
+			telemetryLog.write(telemetry);
+			if (!warmUp) {
+				System.out.println(telemetry);
+			}
+		}
+        return solution;
     }
     
     /* stochastic search with restarts: performs stochastic search
-     * and restarts once the best score doesn't change anymore
+     * and restarts from one of the best solutions found once the best score doesn't change anymore.
+     * Like the other searches, it records what it does in telemetry if it isn't null
      */
-    private Solution stochasticSearchRestart(Solution solution, double probability, int iterThreshold, long timeLimit) {
+    private Solution stochasticSearchRestart(Solution solution, double probability, int iterThreshold, long timeLimit,
+    		SearchTelemetry telemetry, Watchdog.BestSoFar best) {
 		Solution bestCurrentSolution = solution;
 		Random generator = new Random();
 		long startTime = System.currentTimeMillis();
-		int haventMadeProgressSince = 0, restartPointsMaxSize = 5000;
-		ArrayList<Solution> neighbourgs, restartPoints = new ArrayList<Solution>(restartPointsMaxSize);
+		int haventMadeProgressSince = 0;
+		ArrayList<Solution> neighbourgs;
+		ElitePool restartPoints = new ElitePool(eliteSize);
+		restartPoints.add(solution);
 		
 		
         while (System.currentTimeMillis() < timeLimit) {
+        	boolean sampled = telemetry != null && telemetry.sampling();
+        	long sampleStart = (sampled) ? System.nanoTime() : 0;
         	neighbourgs = solution.generateNeighbours();
+        	if (sampled) {
+        		telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+        	}
         	if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+        		emptyNeighbourhoods++;
+        		if (telemetry != null) {
+        			telemetry.iteration(0, false, bestCurrentSolution.getCost());
+        		}
+        		if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+        			break;
+        		}
 				continue;
 			}
         	
@@ -137,8 +262,97 @@ public class CentralizedAgent implements CentralizedBehavior {
         		solution = neighbourgs.get(generator.nextInt(neighbourgs.size()));
         	}
         	
-        	if (solution.cost < bestCurrentSolution.cost) {
+        	if (solution.getCost() < bestCurrentSolution.getCost()) {
+        		bestCurrentSolution = solution;
+        		best.offer(solution);
+        		haventMadeProgressSince = 0;
+        		restartPoints.add(solution);
+        	} else {
+        		haventMadeProgressSince++;
+        	}
+        	
+        	if (haventMadeProgressSince > iterThreshold) {
+        		solution = restartPoints.random(generator);
+        		haventMadeProgressSince = 0;
+        	}
+        	if (telemetry != null) {
+        		telemetry.iteration(neighbourgs.size(), true, bestCurrentSolution.getCost());
+        	}
+        }
+        return bestCurrentSolution;
+	}
+    
+    
+    /* tabu search: at each stage, we take the best neighbour that was not visited recently and that does not move
+     * a tabu task (a task moved during the last tabuTenure iterations), unless it is better than the best solution
+     * found so far (aspiration). Since a neighbourhood only contains the neighbours of a single random move, the
+     * candidates are taken from neighbourhoodSamples neighbourhoods. The visited solutions are remembered by their
+     * hash. Once the best score doesn't
+     * change for iterThreshold iterations, we restart from one of the best solutions found
+     */
+    private Solution tabuSearch(Solution solution, int tabuTenure, int iterThreshold, long timeLimit,
+    		SearchTelemetry telemetry, Watchdog.BestSoFar best) {
+		Solution bestCurrentSolution = solution, bestNeighbour;
+		Random generator = new Random();
+		int haventMadeProgressSince = 0;
+		int[] tabuUntil = new int[solution.getProblem().nbrTasks()]; // iteration until which moving a task is tabu
+		VisitedSet visited = new VisitedSet(20);
+		ElitePool restartPoints = new ElitePool(eliteSize);
+		ArrayList<Solution> neighbourgs;
+		restartPoints.add(solution);
+		visited.add(solution.hash());
+		
+        for (int iteration = 1; System.currentTimeMillis() < timeLimit; iteration++) {
+        	boolean sampled = telemetry != null && telemetry.sampling();
+        	long sampleStart = (sampled) ? System.nanoTime() : 0;
+        	neighbourgs = solution.generateNeighbours();
+        	for (int i = 1; i < neighbourhoodSamples; i++) {
+        		neighbourgs.addAll(solution.generateNeighbours());
+        	}
+        	if (sampled) {
+        		telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+        	}
+        	if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+        		emptyNeighbourhoods++;
+        		if (telemetry != null) {
+        			telemetry.iteration(0, false, bestCurrentSolution.getCost());
+        		}
+        		if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+        			break;
+        		}
+				continue;
+			}
+        	
+        	bestNeighbour = null;
+        	long bestNeighbourHash = 0;
+        	for (Solution neighbour: neighbourgs) {
+        		long hash = neighbour.hash();
+        		boolean aspiration = neighbour.getCost() < bestCurrentSolution.getCost();
+        		boolean tabu = tabuUntil[neighbour.getMovedTask1()] >= iteration
+        				|| (neighbour.getMovedTask2() >= 0 && tabuUntil[neighbour.getMovedTask2()] >= iteration);
+        		if (!aspiration && (tabu || visited.contains(hash))) {
+        			continue;
+        		}
+        		if (bestNeighbour == null || neighbour.getCost() < bestNeighbour.getCost()) {
+        			bestNeighbour = neighbour;
+        			bestNeighbourHash = hash;
+        		}
+        	}
+        	if (bestNeighbour == null) { // the whole neighbourhood is tabu, we move to a random neighbour
+        		bestNeighbour = neighbourgs.get(generator.nextInt(neighbourgs.size()));
+        		bestNeighbourHash = bestNeighbour.hash();
+        	}
+        	
+        	solution = bestNeighbour;
+        	visited.add(bestNeighbourHash);
+        	tabuUntil[solution.getMovedTask1()] = iteration + tabuTenure;
+        	if (solution.getMovedTask2() >= 0) {
+        		tabuUntil[solution.getMovedTask2()] = iteration + tabuTenure;
+        	}
+        	
+        	if (solution.getCost() < bestCurrentSolution.getCost()) {
         		bestCurrentSolution = solution;
+        		best.offer(solution);
         		haventMadeProgressSince = 0;
         		restartPoints.add(solution);
         	} else {
@@ -146,9 +360,12 @@ public class CentralizedAgent implements CentralizedBehavior {
         	}
         	
         	if (haventMadeProgressSince > iterThreshold) {
-        		solution = restartPoints.get(generator.nextInt(restartPoints.size()));
+        		solution = restartPoints.random(generator);
         		haventMadeProgressSince = 0;
         	}
+        	if (telemetry != null) {
+        		telemetry.iteration(neighbourgs.size(), true, bestCurrentSolution.getCost());
+        	}
         }
         return bestCurrentSolution;
 	}
@@ -157,15 +374,28 @@ public class CentralizedAgent implements CentralizedBehavior {
     /* performs the stochastic search, at each stage, with probability p, we take the neighbourgh
      * with best score, with probability 1-p, we take a random new neighbourg
      */
-	private Solution stochasticSearchTakeRandomWithP(Solution solution, double probability, long timeLimit) {
+	private Solution stochasticSearchTakeRandomWithP(Solution solution, double probability, long timeLimit,
+			SearchTelemetry telemetry, Watchdog.BestSoFar best) {
 		Solution bestCurrentSolution = solution;
 		Random generator = new Random();
 		long startTime = System.currentTimeMillis();
 		ArrayList<Solution> neighbourgs;
 		
         while (System.currentTimeMillis() < timeLimit) {
+        	boolean sampled = telemetry != null && telemetry.sampling();
+        	long sampleStart = (sampled) ? System.nanoTime() : 0;
         	neighbourgs = solution.generateNeighbours();
+        	if (sampled) {
+        		telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+        	}
         	if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+        		emptyNeighbourhoods++;
+        		if (telemetry != null) {
+        			telemetry.iteration(0, false, bestCurrentSolution.getCost());
+        		}
+        		if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+        			break;
+        		}
 				continue;
 			}
         	if (generator.nextDouble() < probability) {
@@ -173,69 +403,100 @@ public class CentralizedAgent implements CentralizedBehavior {
         	} else {
         		solution = neighbourgs.get(generator.nextInt(neighbourgs.size()));
         	}
-        	if (solution.cost < bestCurrentSolution.cost) {
+        	if (solution.getCost() < bestCurrentSolution.getCost()) {
         		bestCurrentSolution = solution;
+        		best.offer(solution);
         	}   
+        	if (telemetry != null) {
+        		telemetry.iteration(neighbourgs.size(), true, bestCurrentSolution.getCost());
+        	}
         }
         return bestCurrentSolution;
 	}
 
 	/* performs a simmulated annealing, the temperature is decreased linearly at each iteration
 	 * to be equal to temperatureInit on the first one and temperatureEnd on the last one (approximately)
-	 * 
+	 * every polishPeriod iterations, the routes of the current solution are polished (see Solution.polishRoutes)
 	 */
 	private Solution simulatedAnnealing(Solution solution, double temperatureInit, 
-			double temperatureEnd, long timeLimit) {
-		int iterations_best = 0;
+			double temperatureEnd, long timeLimit, SearchTelemetry telemetry, Watchdog.BestSoFar best) {
+		int iterations_best = 0, iterations = 0;
 		Random generator = new Random();
 		Solution newSol, bestCurrentSolution = solution, bestNeighborhoodSol;
 		double temperature = temperatureInit, diffScore;
 		long startTime = System.currentTimeMillis(), deltaTime = timeLimit - startTime;
 		ArrayList<Solution> neighbourgs;
+		boolean accepted;
 
 				
 		for (double currentTime = System.currentTimeMillis(), fractionTimeLeft; currentTime < timeLimit; currentTime = System.currentTimeMillis()) {
 			fractionTimeLeft = (timeLimit - currentTime) / deltaTime;
 			temperature = temperatureInit * fractionTimeLeft + temperatureEnd * (1-fractionTimeLeft); // update the temperature
 					
+			boolean sampled = telemetry != null && telemetry.sampling();
+			long sampleStart = (sampled) ? System.nanoTime() : 0;
 			neighbourgs = solution.generateNeighbours();
+			if (sampled) {
+				telemetry.neighboursTimed(solution, neighbourgs, System.nanoTime() - sampleStart);
+			}
 			if (neighbourgs.size() == 0) {  // possible if very restrictive constraints
+				emptyNeighbourhoods++;
+				if (telemetry != null) {
+					telemetry.iteration(0, false, bestCurrentSolution.getCost());
+				}
+				if (!solution.hasNeighbours()) {  // no move can ever be applied, searching further is useless
+					break;
+				}
 				continue;
 			}
 			bestNeighborhoodSol = Collections.min(neighbourgs);
-			if (bestNeighborhoodSol.cost < bestCurrentSolution.cost) {
+			if (bestNeighborhoodSol.getCost() < bestCurrentSolution.getCost()) {
 	    		bestCurrentSolution = bestNeighborhoodSol;
+	    		best.offer(bestNeighborhoodSol);
 	    	}
 			newSol = neighbourgs.get(generator.nextInt(neighbourgs.size())); // pick random solution
 			
-			diffScore = newSol.cost - solution.cost;
-			if (diffScore <= 0) {
-				solution = newSol;
-			} else if (generator.nextDouble() < Math.exp(- diffScore / temperature)) { // accept with a probability that decreases with the temperature
-				// and that is smaller the worse the new solution is
+			diffScore = newSol.getCost() - solution.getCost();
+			accepted = diffScore <= 0 || generator.nextDouble() < Math.exp(- diffScore / temperature); // accept with a probability that
+			// decreases with the temperature and that is smaller the worse the new solution is
+			if (accepted) {
 				solution = newSol;
 			}
+			
+			if (polishPeriod > 0 && ++iterations % polishPeriod == 0) {
+				// every route of the current solution is brought to a local optimum of the intra-route moves
+				solution = solution.polishRoutes();
+				if (solution.getCost() < bestCurrentSolution.getCost()) {
+					bestCurrentSolution = solution;
+					best.offer(solution);
+				}
+			}
+			if (telemetry != null) {
+				telemetry.iteration(neighbourgs.size(), accepted, bestCurrentSolution.getCost());
+			}
         }
 
         return bestCurrentSolution;
 	}
 	
+    // return the number of search iterations that found no neighbour during the last plan
+    public long getEmptyNeighbourhoods() {
+    	return emptyNeighbourhoods;
+    }
+	
     private Plan naivePlan(Vehicle vehicle, TaskSet tasks) {
         City current = vehicle.getCurrentCity();
         Plan plan = new Plan(current);
+        RoutingTable routing = RoutingTable.of(current);
 
         for (Task task : tasks) {
             // move: current city => pickup location
-            for (City city : current.pathTo(task.pickupCity)) {
-                plan.appendMove(city);
-            }
+            routing.appendMoves(plan, current, task.pickupCity);
 
             plan.appendPickup(task);
 
             // move: pickup location => delivery location
-            for (City city : task.path()) {
-                plan.appendMove(city);
-            }
+            routing.appendMoves(plan, task.pickupCity, task.deliveryCity);
 
             plan.appendDelivery(task);
 
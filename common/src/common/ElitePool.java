@@ -0,0 +1,54 @@
+package common;
+
+import java.util.Random;
+
+/*
+ * Bounded pool of the best distinct solutions found by a search, used as restart points. Once the pool is full,
+ * a new solution only enters the pool if it is better than the worst one, which it replaces. Two solutions with
+ * the same hash (see Solution.hash) are considered equal.
+ */
+public class ElitePool {
+	private final Solution[] solutions;
+	private final long[] hashes;
+	private int size = 0;
+
+	public ElitePool(int capacity) {
+		solutions = new Solution[capacity];
+		hashes = new long[capacity];
+	}
+
+	/*
+	 * adds the solution to the pool if it is not already in it and if the pool is not full or if it is better
+	 * than the worst solution of the pool, return true if the solution was added
+	 */
+	public boolean add(Solution solution) {
+		long hash = solution.hash();
+		int worst = -1;
+		for (int i = 0; i < size; i++) {
+			if (hashes[i] == hash) {
+				return false;
+			}
+			if (worst == -1 || solutions[i].cost > solutions[worst].cost) {
+				worst = i;
+			}
+		}
+		if (size < solutions.length) {
+			worst = size++;
+		} else if (solution.cost >= solutions[worst].cost) {
+			return false;
+		}
+		solutions[worst] = solution;
+		hashes[worst] = hash;
+		return true;
+	}
+
+	// return a random solution of the pool or null if the pool is empty
+	public Solution random(Random generator) {
+		return (size == 0) ? null : solutions[generator.nextInt(size)];
+	}
+
+	// return the number of solutions in the pool
+	public int size() {
+		return size;
+	}
+}
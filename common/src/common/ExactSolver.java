@@ -0,0 +1,166 @@
+package common;
+
+import java.util.Arrays;
+
+/*
+ * Exact solver for the small problems, by depth first branch and bound. The routes are built one vehicle after
+ * the other: the current vehicle either delivers one of the tasks it carries, picks up a task that nobody did yet or,
+ * if it carries nothing, ends its route and leaves the remaining tasks to the next vehicles.
+ * A branch is cut when its cost plus a lower bound of the cost of the remaining tasks is not better than the best
+ * solution found so far, or when the same state (vehicle, position, picked up and delivered tasks) was already
+ * reached with a lower cost. The lower bound is the one of our deliberative A*: the cost of the most expensive
+ * remaining task if it was done alone.
+ * It is also used to get the optimal costs of small problems when evaluating the stochastic searches (see
+ * benchmark.OptimalityGapBenchmark).
+ */
+public class ExactSolver {
+	public static final int MAX_TASKS = 20; // the picked up and delivered tasks of a state are encoded on a long
+	private static final int MAX_SEEN_STATES = 1 << 21; // we stop remembering states above that (memory)
+	private static final double EPSILON = 1e-6; // costs closer than that are considered equal
+
+	private final ProblemInstance problem;
+	private final int nbrPairs;
+	private final long allTasks; // the bitset containing every task
+	private final double[][] laterBound; /* laterBound[t][v] is a lower bound of the cost of doing task t with one of
+	the vehicles after v, infinity if none of them can carry it */
+	private final int[][] routes; // the routes being built
+	private final int[] routesLength;
+	private final LongDoubleMap seenStates = new LongDoubleMap(10); // lowest cost at which a state was reached
+	private int[][] bestRoutes;
+	private double bestCost;
+	private long timeLimit;
+	private boolean timeout;
+	private long exploredNodes;
+
+	public ExactSolver(ProblemInstance problem) throws IllegalArgumentException {
+		if (problem.nbrTasks / 2 > MAX_TASKS) {
+			throw new IllegalArgumentException("The exact solver can't handle more than " + MAX_TASKS + " tasks.");
+		}
+		this.problem = problem;
+		nbrPairs = problem.nbrTasks / 2;
+		allTasks = (1L << nbrPairs) - 1;
+		routes = new int[problem.nbrVehicles][problem.nbrTasks];
+		routesLength = new int[problem.nbrVehicles];
+
+		laterBound = new double[nbrPairs][problem.nbrVehicles];
+		for (int t = 0; t < nbrPairs; t++) {
+			double bound = Double.POSITIVE_INFINITY;
+			for (int v = problem.nbrVehicles - 1; v >= 0; v--) {
+				laterBound[t][v] = bound;
+				if (problem.vehicleCapacity[v] >= problem.weight[2 * t]) {
+					bound = Math.min(bound, problem.vehicleCostPerKm[v]
+							* (problem.distance[problem.nbrTasks + v][2 * t] + problem.distance[2 * t][2 * t + 1]));
+				}
+			}
+		}
+	}
+
+	/*
+	 * return an optimal solution of the problem or null if the search could not finish before timeLimit.
+	 * upperBound is a solution of the problem (may be null) whose cost is used to cut the search from the start,
+	 * it is returned if it is optimal
+	 */
+	public Solution solve(Solution upperBound, long timeLimit) {
+		this.timeLimit = timeLimit;
+		timeout = false;
+		exploredNodes = 0;
+		seenStates.clear();
+		bestRoutes = null;
+		bestCost = (upperBound == null) ? Double.POSITIVE_INFINITY : upperBound.cost;
+
+		if (problem.nbrVehicles > 0) {
+			search(0, problem.nbrTasks, 0, 0L, 0L, 0.);
+		}
+		seenStates.clear();
+		if (timeout) {
+			return null;
+		}
+		return (bestRoutes == null) ? upperBound : new Solution(problem, bestRoutes);
+	}
+
+	// number of nodes explored by the last call to solve
+	public long getExploredNodes() {
+		return exploredNodes;
+	}
+
+	/*
+	 * explores every way of finishing the routes, v is the vehicle whose route is being built, pos is its last
+	 * Task (or the vehicle itself), load is its current load and the tasks (pairs) already picked up and delivered
+	 * by any vehicle are the bits of picked and delivered
+	 */
+	private void search(int v, int pos, int load, long picked, long delivered, double cost) {
+		if ((++exploredNodes & 1023) == 0 && System.currentTimeMillis() > timeLimit) {
+			timeout = true;
+		}
+		if (timeout) {
+			return;
+		}
+		if (delivered == allTasks) {  // the next vehicles do nothing
+			if (cost < bestCost - EPSILON) {
+				bestCost = cost;
+				bestRoutes = new int[problem.nbrVehicles][];
+				for (int w = 0; w < problem.nbrVehicles; w++) {
+					bestRoutes[w] = (w <= v) ? Arrays.copyOf(routes[w], routesLength[w]) : new int[0];
+				}
+			}
+			return;
+		}
+		if (cost + lowerBound(v, pos, picked, delivered) >= bestCost - EPSILON) {
+			return;
+		}
+
+		// the state doesn't depend on the order in which the tasks were done, if we already reached it cheaper we stop
+		long state = ((((long) v * (problem.nbrTasks + problem.nbrVehicles) + pos) << nbrPairs | picked) << nbrPairs) | delivered;
+		double previousCost = seenStates.get(state);  // NaN if it was never reached
+		if (previousCost <= cost + EPSILON) {
+			return;
+		}
+		if (!Double.isNaN(previousCost) || seenStates.size() < MAX_SEEN_STATES) {
+			seenStates.put(state, cost);
+		}
+
+		long carried = picked & ~delivered;
+		for (int t = 0; t < nbrPairs; t++) {
+			long bit = 1L << t;
+			if ((carried & bit) != 0) {
+				routes[v][routesLength[v]++] = 2 * t + 1;
+				search(v, 2 * t + 1, load - problem.weight[2 * t], picked, delivered | bit,
+						cost + problem.vehicleCostPerKm[v] * problem.distance[pos][2 * t + 1]);
+				routesLength[v]--;
+			} else if ((picked & bit) == 0 && load + problem.weight[2 * t] <= problem.vehicleCapacity[v]) {
+				routes[v][routesLength[v]++] = 2 * t;
+				search(v, 2 * t, load + problem.weight[2 * t], picked | bit, delivered,
+						cost + problem.vehicleCostPerKm[v] * problem.distance[pos][2 * t]);
+				routesLength[v]--;
+			}
+		}
+		if (carried == 0 && v + 1 < problem.nbrVehicles) {  // v stops here
+			search(v + 1, problem.nbrTasks + v + 1, 0, picked, delivered, cost);
+		}
+	}
+
+	/*
+	 * lower bound of the cost of the remaining tasks: the maximum over the remaining tasks of the cheapest way of
+	 * doing that task alone, from the current position of v or from the home city of one of the next vehicles
+	 */
+	private double lowerBound(int v, int pos, long picked, long delivered) {
+		double bound = 0;
+		for (int t = 0; t < nbrPairs; t++) {
+			long bit = 1L << t;
+			double taskBound;
+			if ((delivered & bit) != 0) {
+				continue;
+			} else if ((picked & bit) != 0) {  // carried by v
+				taskBound = problem.vehicleCostPerKm[v] * problem.distance[pos][2 * t + 1];
+			} else {
+				taskBound = laterBound[t][v];
+				if (problem.vehicleCapacity[v] >= problem.weight[2 * t]) {
+					taskBound = Math.min(taskBound, problem.vehicleCostPerKm[v]
+							* (problem.distance[pos][2 * t] + problem.distance[2 * t][2 * t + 1]));
+				}
+			}
+			bound = Math.max(bound, taskBound);
+		}
+		return bound;
+	}
+}
@@ -0,0 +1,81 @@
+package common;
+
+import java.util.Arrays;
+
+/*
+ * Map from non negative longs to doubles without boxing, by open addressing with linear probing: the keys and values
+ * are in two arrays, the table doubles when it is half full. Used by the exact solver for its states, that would
+ * otherwise be millions of Long and Double objects in a single plan.
+ */
+class LongDoubleMap {
+	private static final long EMPTY = -1; // the key of the free slots, the keys are non negative
+	private long[] keys;
+	private double[] values;
+	private int mask;
+	private int size;
+
+	// creates an empty map of 2^log2Capacity slots, it grows when needed
+	LongDoubleMap(int log2Capacity) {
+		allocate(1 << log2Capacity);
+	}
+
+	// return the value of key, NaN if it has none
+	double get(long key) {
+		for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			} else if (keys[slot] == EMPTY) {
+				return Double.NaN;
+			}
+		}
+	}
+
+	void put(long key, double value) {
+		int slot = slot(key);
+		while (keys[slot] != key && keys[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		values[slot] = value;
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			if (++size > keys.length / 2) {
+				grow();
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	// removes every key, the table keeps its capacity
+	void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new double[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		allocate(2 * oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	// the slot where the search for key starts, the bits of the key are mixed since the low ones are the tasks done
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,153 @@
+package common;
+
+import java.util.List;
+import java.util.Random;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+/*
+ * Immutable data of a pickup and delivery problem: the tasks, the vehicles and the distances between all of
+ * their cities. It is built once per problem and shared by all the Solutions of that problem.
+ * What we call Task in the following is either a task delivery or a task pickup, every array over the Tasks and
+ * Vehicles is ordered by : [Task_0 (pickup), Task_0 (delivery), ..., Task_n (delivery), Vehicle_0, ..., Vehicle_m]
+ */
+public class ProblemInstance {
+	final int nbrVehicles, nbrTasks;
+	final int[] weight; // the weight of every Task, negative for deliveries
+	final City[] city; // the city corresponding to every Task and every Vehicle (initial city)
+	final int[] vehicleCapacity; // initial capacity of every vehicle
+	final int[] vehicleCostPerKm; // cost per Km of every vehicle
+	final double[][] distance; // distance[i][j] is the distance between the cities of i and j (Tasks or Vehicles)
+	final Random generator; // random generator used by the solutions of this problem
+	private long[][] zobristKeys; // zobristKeys[i][j+1] is the random key of "the next Task of i is j", see zobristKeys()
+
+	/*
+	 * builds the problem of delivering tasks with vehicles
+	 */
+	public ProblemInstance(List<Task> tasks, List<Vehicle> vehicles) throws IllegalArgumentException {
+		this(tasks.size(), vehicles.size());
+
+		for (int i = 0; i < nbrVehicles; i++) {
+			city[nbrTasks + i] = vehicles.get(i).homeCity();
+			vehicleCapacity[i] = vehicles.get(i).capacity();
+			vehicleCostPerKm[i] = vehicles.get(i).costPerKm();
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			setTask(i, tasks.get(i).weight, tasks.get(i).pickupCity, tasks.get(i).deliveryCity);
+		}
+		computeDistances();
+	}
+
+	/*
+	 * same constructor as above but works with non tasks arguments because we can't create tasks trough the
+	 * logist API and with vehicles that are described by their home city, capacity and cost per km
+	 */
+	public ProblemInstance(List<Integer> tasksWeights, List<City> tasksPickupCity, List<City> tasksDeliverCity,
+			City[] vHomeCity, int[] vCapacity, int[] vCostPerKm) throws IllegalArgumentException {
+		this(tasksWeights.size(), vHomeCity.length);
+
+		for (int i = 0; i < nbrVehicles; i++) {
+			city[nbrTasks + i] = vHomeCity[i];
+			vehicleCapacity[i] = vCapacity[i];
+			vehicleCostPerKm[i] = vCostPerKm[i];
+		}
+		for (int i = 0; i < tasksWeights.size(); i++) {
+			setTask(i, tasksWeights.get(i), tasksPickupCity.get(i), tasksDeliverCity.get(i));
+		}
+		computeDistances();
+	}
+
+	// allocates the arrays of the problem
+	private ProblemInstance(int nbrPairs, int nbrVehicles) {
+		this.nbrVehicles = nbrVehicles;
+		this.nbrTasks = 2 * nbrPairs;
+		weight = new int[nbrTasks];
+		city = new City[nbrTasks + nbrVehicles];
+		vehicleCapacity = new int[nbrVehicles];
+		vehicleCostPerKm = new int[nbrVehicles];
+		distance = new double[nbrTasks + nbrVehicles][nbrTasks + nbrVehicles];
+		generator = new Random();
+	}
+
+	/*
+	 * sets the pickup and delivery Tasks of the i'th task, if no vehicle is able to carry it, the problem
+	 * is unsolvable and we throw an IllegalArgumentException
+	 */
+	private void setTask(int i, int taskWeight, City pickupCity, City deliveryCity) throws IllegalArgumentException {
+		int maxCapacity = Integer.MIN_VALUE; //Maximum capacity among all vehicles
+		for (int capacity: vehicleCapacity) {
+			maxCapacity = Math.max(maxCapacity, capacity);
+		}
+		if (taskWeight > maxCapacity) {
+			throw new IllegalArgumentException(
+					"One of the tasks has a weight that is too big for any vehicle, the problem is unsolvable.");
+		}
+		weight[2 * i] = taskWeight;
+		weight[2 * i + 1] = -taskWeight; // delivering a task is equivalent to taking a task of negtaive capacity
+		city[2 * i] = pickupCity;
+		city[2 * i + 1] = deliveryCity;
+	}
+
+	// fills the distance matrix from the one of the topology, the matrix is symmetric
+	private void computeDistances() {
+		if (city.length == 0) {
+			return;
+		}
+		RoutingTable routing = RoutingTable.of(city[0]);
+		for (int i = 0; i < city.length; i++) {
+			for (int j = i + 1; j < city.length; j++) {
+				distance[i][j] = routing.distance(city[i], city[j]);
+				distance[j][i] = distance[i][j];
+			}
+		}
+	}
+
+	/*
+	 * return the random keys used to hash the nextTask arrays of the solutions (Zobrist hashing), the keys are
+	 * only generated the first time they are needed since most searches don't hash their solutions
+	 */
+	synchronized long[][] zobristKeys() {
+		if (zobristKeys == null) {
+			zobristKeys = new long[city.length][city.length + 1];
+			for (long[] keys: zobristKeys) {
+				for (int j = 0; j < keys.length; j++) {
+					keys[j] = generator.nextLong();
+				}
+			}
+		}
+		return zobristKeys;
+	}
+
+	/*
+	 * return for every task t of other the index of an identical task of this problem (same weight, pickup and
+	 * delivery cities) or -1 if there is none, two tasks of other are never matched with the same task
+	 */
+	public int[] matchTasks(ProblemInstance other) {
+		int[] match = new int[other.nbrTasks / 2];
+		boolean[] matched = new boolean[nbrTasks / 2];
+		for (int t = 0; t < match.length; t++) {
+			match[t] = -1;
+			for (int u = 0; u < matched.length; u++) {
+				if (!matched[u] && weight[2 * u] == other.weight[2 * t] && city[2 * u] == other.city[2 * t]
+						&& city[2 * u + 1] == other.city[2 * t + 1]) {
+					match[t] = u;
+					matched[u] = true;
+					break;
+				}
+			}
+		}
+		return match;
+	}
+
+	// number of tasks (pairs of pickup and delivery) of the problem
+	public int nbrTasks() {
+		return nbrTasks / 2;
+	}
+
+	// number of vehicles of the problem
+	public int nbrVehicles() {
+		return nbrVehicles;
+	}
+}
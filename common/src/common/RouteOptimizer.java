@@ -0,0 +1,197 @@
+package common;
+
+/*
+ * Local search on the route of a single vehicle, the tasks stay in the same vehicle and only their order changes.
+ * It applies improving moves until none is left (first improvement):
+ * - relocate and Or-opt: a segment of 1 to MAX_SEGMENT consecutive Tasks is moved elsewhere in the route
+ * - 2-opt: a segment of the route is executed in the reverse order
+ * The moves are evaluated by their distance delta (only the edges around the segment change, the distances are
+ * symmetric) and the infeasible ones are rejected from the positions of the Tasks (precedence) and the load profile
+ * of the route (capacity) before anything is changed.
+ */
+class RouteOptimizer {
+	private static final int MAX_SEGMENT = 3; // longest segment moved by Or-opt
+	private static final double EPSILON = 1e-6; // smallest improvement we accept, avoids looping on rounding errors
+
+	private final ProblemInstance problem;
+	private final int v; // the vehicle
+	private final int[] route; // the Tasks of v in the order it executes them
+	private final int[] load; // load[i] is the load of v after executing route[i]
+	private final int[] position; // position[task] is the index of a Task of v in route
+	private final int[] buffer; // used to move the segments
+
+	/*
+	 * optimizer of the route of vehicle v, the given route isn't modified
+	 */
+	RouteOptimizer(ProblemInstance problem, int v, int[] route) {
+		this.problem = problem;
+		this.v = v;
+		this.route = route.clone();
+		load = new int[route.length];
+		position = new int[problem.nbrTasks];
+		buffer = new int[route.length];
+		update();
+	}
+
+	/*
+	 * improves the route until it reaches a local optimum, return true if it was improved
+	 */
+	boolean optimize() {
+		boolean improved = false;
+		while (relocate() || twoOpt()) {
+			improved = true;
+		}
+		return improved;
+	}
+
+	// return the route
+	int[] getRoute() {
+		return route;
+	}
+
+	// recomputes the load profile and the positions after a move
+	private void update() {
+		int currentLoad = 0;
+		for (int i = 0; i < route.length; i++) {
+			currentLoad += problem.weight[route[i]];
+			load[i] = currentLoad;
+			position[route[i]] = i;
+		}
+	}
+
+	// the Task (or vehicle) at index i of the route, -1 after the end of the route
+	private int node(int i) {
+		if (i < 0) {
+			return problem.nbrTasks + v;
+		}
+		return (i < route.length) ? route[i] : -1;
+	}
+
+	// distance between two nodes of the route, the end of the route (-1) is free to reach
+	private double distance(int a, int b) {
+		return (a == -1 || b == -1) ? 0 : problem.distance[a][b];
+	}
+
+	// load before executing route[i]
+	private int loadBefore(int i) {
+		return (i == 0) ? 0 : load[i - 1];
+	}
+
+	/*
+	 * applies the first improving move of a segment [i, i+length-1] to after the index k (-1 for the beginning of the
+	 * route), return true if a move was applied
+	 */
+	private boolean relocate() {
+		int capacity = problem.vehicleCapacity[v];
+		for (int length = 1; length <= MAX_SEGMENT; length++) {
+			for (int i = 0; i + length <= route.length; i++) {
+				int first = route[i], last = route[i + length - 1], end = i + length - 1;
+				int before = node(i - 1), after = node(i + length);
+				int segmentWeight = load[end] - loadBefore(i); // load difference caused by the segment
+				double removalGain = distance(before, first) + distance(last, after) - distance(before, after);
+
+				// moving the segment later: every Task between the segment and k is executed without the segment
+				for (int k = end + 1; k < route.length; k++) {
+					int task = route[k];
+					if (task % 2 == 1 && position[task - 1] >= i && position[task - 1] <= end) {
+						break;  // the pickup of that delivery is in the segment, the segment can't go any further
+					}
+					if (load[k] - segmentWeight > capacity) {
+						break;  // the Tasks we go over would be overloaded, and so would they if we went further
+					}
+					double insertionCost = distance(task, first) + distance(last, node(k + 1)) - distance(task, node(k + 1));
+					if (insertionCost < removalGain - EPSILON && segmentFits(i, end, load[k] - segmentWeight)) {
+						moveSegment(i, length, k);
+						return true;
+					}
+				}
+
+				// moving the segment earlier: every Task between k and the segment is executed with the segment
+				for (int k = i - 2; k >= -1; k--) {
+					int task = route[k + 1];
+					if (task % 2 == 0 && position[task + 1] >= i && position[task + 1] <= end) {
+						break;  // the delivery of that pickup is in the segment
+					}
+					if (load[k + 1] + segmentWeight > capacity) {
+						break;
+					}
+					double insertionCost = distance(node(k), first) + distance(last, task) - distance(node(k), task);
+					if (insertionCost < removalGain - EPSILON && segmentFits(i, end, (k == -1) ? 0 : load[k])) {
+						moveSegment(i, length, k);
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	// return true if the Tasks of the segment [i, end] respect the capacity when the load before them is loadBefore
+	private boolean segmentFits(int i, int end, int loadBefore) {
+		int capacity = problem.vehicleCapacity[v], offset = loadBefore - loadBefore(i);
+		for (int j = i; j <= end; j++) {
+			if (load[j] + offset > capacity) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// moves the segment of the given length starting at index i after the index k (in the current route)
+	private void moveSegment(int i, int length, int k) {
+		System.arraycopy(route, i, buffer, 0, length);
+		if (k > i) {  // the Tasks between the segment and k move back
+			System.arraycopy(route, i + length, route, i, k - i - length + 1);
+			System.arraycopy(buffer, 0, route, k - length + 1, length);
+		} else {  // the Tasks between k and the segment move forward
+			System.arraycopy(route, k + 1, route, k + 1 + length, i - k - 1);
+			System.arraycopy(buffer, 0, route, k + 1, length);
+		}
+		update();
+	}
+
+	/*
+	 * applies the first improving reversal of a segment [i, j] of the route, the segment can't contain both the
+	 * pickup and the delivery of a task, return true if a move was applied
+	 */
+	private boolean twoOpt() {
+		int capacity = problem.vehicleCapacity[v];
+		for (int i = 0; i < route.length - 1; i++) {
+			int before = node(i - 1);
+			for (int j = i + 1; j < route.length; j++) {
+				int task = route[j];
+				if (task % 2 == 1 && position[task - 1] >= i) {
+					break;  // the pickup of route[j] is in the segment, every longer segment contains both too
+				}
+				double delta = distance(before, task) + distance(route[i], node(j + 1))
+						- distance(before, route[i]) - distance(task, node(j + 1));
+				if (delta < -EPSILON && reversedFits(i, j, capacity)) {
+					reverse(i, j);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * return true if the segment [i, j] respects the capacity once reversed: the load after executing route[k] is
+	 * then the load before the segment plus the weights of route[k..j]
+	 */
+	private boolean reversedFits(int i, int j, int capacity) {
+		for (int k = j; k >= i; k--) {
+			if (loadBefore(i) + load[j] - loadBefore(k) > capacity) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// reverses the segment [i, j] of the route
+	private void reverse(int i, int j) {
+		for (; i < j; i++, j--) {
+			Solution.swap(route, i, j);
+		}
+		update();
+	}
+}
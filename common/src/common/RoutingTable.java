@@ -0,0 +1,157 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * A topology compiled into arrays indexed by the id of the cities:
+ * - distance[a][b] is the length of a shortest path from a to b
+ * - nextHop[a][b] is the neighbour of a that follows a on a shortest path from a to b
+ * - the neighbours of every city, as compressed rows: the ids of the neighbours of a are
+ *   neighbourIds[neighbourStart[a]] to neighbourIds[neighbourStart[a + 1] - 1]
+ * Reading them doesn't allocate anything while City.pathTo builds a new list at every call, and it avoids going
+ * through the City objects in the loops of the agents. The tables are built once per topology and shared by all the
+ * agents of the JVM.
+ */
+public class RoutingTable {
+	private static final List<RoutingTable> tables = new ArrayList<RoutingTable>(); // the tables built so far
+
+	private final City[] cities; // the cities of the topology, by id
+	private final City[][] nextHop;
+	private final double[][] distance;
+	private final int[] neighbourStart;
+	private final int[] neighbourIds;
+
+	// return the routing table of the topology of the given city
+	public static synchronized RoutingTable of(City city) {
+		for (RoutingTable table: tables) {
+			if (table.contains(city)) {
+				return table;
+			}
+		}
+		RoutingTable table = new RoutingTable(city);
+		tables.add(table);
+		return table;
+	}
+
+	// return the routing table of the topology
+	public static RoutingTable of(Topology topology) {
+		return of(topology.cities().get(0));
+	}
+
+	// builds the table of the topology containing the given city
+	private RoutingTable(City anyCity) {
+		// we find all the cities of the topology by a breadth first search over the neighbours
+		List<City> found = new ArrayList<City>();
+		found.add(anyCity);
+		int maxId = anyCity.id;
+		for (int i = 0; i < found.size(); i++) {
+			for (City neighbor: found.get(i).neighbors()) {
+				if (!found.contains(neighbor)) {
+					found.add(neighbor);
+					maxId = Math.max(maxId, neighbor.id);
+				}
+			}
+		}
+		cities = new City[maxId + 1];
+		for (City city: found) {
+			cities[city.id] = city;
+		}
+
+		distance = new double[cities.length][cities.length];
+		neighbourStart = new int[cities.length + 1];
+		for (City from: found) {
+			for (City to: found) {
+				distance[from.id][to.id] = from.distanceTo(to);
+			}
+			neighbourStart[from.id + 1] = from.neighbors().size();
+		}
+		for (int id = 0; id < cities.length; id++) {
+			neighbourStart[id + 1] += neighbourStart[id];
+		}
+		neighbourIds = new int[neighbourStart[cities.length]];
+		for (City from: found) {
+			int k = neighbourStart[from.id];
+			for (City neighbor: from.neighbors()) {
+				neighbourIds[k++] = neighbor.id;
+			}
+		}
+
+		/* the next hop from a to b is a neighbour n of a such that a -> n -> b is as long as the shortest path, the
+		 * distances in units are integers so the comparison is exact, b itself is preferred if it is a neighbour */
+		nextHop = new City[cities.length][cities.length];
+		for (City from: found) {
+			for (City to: found) {
+				if (from == to) {
+					continue;
+				}
+				long shortest = from.distanceUnitsTo(to);
+				for (City neighbor: from.neighbors()) {
+					if (neighbor == to) {
+						nextHop[from.id][to.id] = to;
+						break;
+					}
+					if (nextHop[from.id][to.id] == null
+							&& from.distanceUnitsTo(neighbor) + neighbor.distanceUnitsTo(to) == shortest) {
+						nextHop[from.id][to.id] = neighbor;
+					}
+				}
+			}
+		}
+	}
+
+	// return true if the city belongs to the topology of this table
+	private boolean contains(City city) {
+		return city.id < cities.length && cities[city.id] == city;
+	}
+
+	// return the city after from on a shortest path from from to to (null if from is to)
+	public City nextHop(City from, City to) {
+		return nextHop[from.id][to.id];
+	}
+
+	// return the length of a shortest path from from to to
+	public double distance(City from, City to) {
+		return distance[from.id][to.id];
+	}
+
+	// same as above with the ids of the cities
+	public double distance(int from, int to) {
+		return distance[from][to];
+	}
+
+	// return the number of ids of the topology (the highest id plus one)
+	public int nbrIds() {
+		return cities.length;
+	}
+
+	// return the city with the given id
+	public City city(int id) {
+		return cities[id];
+	}
+
+	/*
+	 * return the index in neighbourIds of the first neighbour of the city id, its neighbours end at the index
+	 * neighbourStart(id + 1)
+	 */
+	public int neighbourStart(int id) {
+		return neighbourStart[id];
+	}
+
+	// return the id of the city at index k of the compressed neighbour lists
+	public int neighbourId(int k) {
+		return neighbourIds[k];
+	}
+
+	// appends to the plan the moves of a shortest path from from to to
+	public void appendMoves(Plan plan, City from, City to) {
+		for (City city = from; city != to; ) {
+			city = nextHop[city.id][to.id];
+			plan.appendMove(city);
+		}
+	}
+}
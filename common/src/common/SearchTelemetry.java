@@ -0,0 +1,180 @@
+package common;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * What a stochastic search did, recorded by the search itself (see TelemetryLog for how the agents turn it on):
+ * the number of iterations, the size of the neighbourhoods, the share of the moves that were accepted and the best
+ * cost over time. The time spent generating the neighbourhoods is only measured every samplePeriod iterations, and on
+ * those iterations the neighbours are cloned once more to split it between the cloning and the evaluation of the
+ * moves (route caches and cost). A telemetry is used by one search on one thread, so its counters are plain fields.
+ */
+public class SearchTelemetry {
+	private static final int MAX_POINTS = 4096; // the best cost curve keeps the first improvements and the last cost
+
+	final String phase; // what the agent was doing (e.g. "bid 3" or "plan")
+	final String search; // which search (e.g. the algorithm and for whom it searched)
+	final int nbrTasks;
+	private final int samplePeriod;
+
+	private long startNanos, endNanos;
+	private long iterations, neighbours, accepted, emptyNeighbourhoods;
+	private double initialCost, bestCost;
+	private long sampledIterations, neighbourNanos, cloneNanos;
+	private final long[] curveMicros = new long[MAX_POINTS];
+	private final double[] curveCost = new double[MAX_POINTS];
+	private int curveSize = 0;
+
+	SearchTelemetry(String phase, String search, int nbrTasks, int samplePeriod) {
+		this.phase = phase;
+		this.search = search;
+		this.nbrTasks = nbrTasks;
+		this.samplePeriod = Math.max(1, samplePeriod);
+	}
+
+	// to be called before the first iteration
+	public void begin(Solution start) {
+		startNanos = System.nanoTime();
+		initialCost = bestCost = start.getCost();
+		addPoint(0, bestCost);
+	}
+
+	// return true if the iteration about to start should time the generation of its neighbourhood
+	public boolean sampling() {
+		return iterations % samplePeriod == 0;
+	}
+
+	/*
+	 * a sampled iteration generated the neighbours of solution in nanos nanoseconds, the time needed to clone solution
+	 * that many times is measured to split it
+	 */
+	public void neighboursTimed(Solution solution, List<Solution> neighbours, long nanos) {
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < neighbours.size(); i++) {
+				solution.clone();
+			}
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+		}
+		cloneNanos += Math.min(nanos, System.nanoTime() - start);
+		neighbourNanos += nanos;
+		sampledIterations++;
+	}
+
+	/*
+	 * an iteration is over, it generated nbrNeighbours neighbours (0 if there were none), moved to one of them if
+	 * accepted and bestCost is the best cost found so far
+	 */
+	public void iteration(int nbrNeighbours, boolean accepted, double bestCost) {
+		iterations++;
+		if (nbrNeighbours == 0) {
+			emptyNeighbourhoods++;
+		} else {
+			neighbours += nbrNeighbours;
+		}
+		if (accepted) {
+			this.accepted++;
+		}
+		if (bestCost < this.bestCost) {
+			this.bestCost = bestCost;
+			if (curveSize < MAX_POINTS - 1) {  // the last point is kept for end
+				addPoint((System.nanoTime() - startNanos) / 1000, bestCost);
+			}
+		}
+	}
+
+	// to be called once the search returned best
+	public void end(Solution best) {
+		endNanos = System.nanoTime();
+		bestCost = Math.min(bestCost, best.getCost());
+		if (curveCost[curveSize - 1] != bestCost || curveSize == 1) {
+			addPoint((endNanos - startNanos) / 1000, bestCost);
+		}
+	}
+
+	private void addPoint(long micros, double cost) {
+		curveMicros[curveSize] = micros;
+		curveCost[curveSize] = cost;
+		curveSize++;
+	}
+
+	public long getIterations() {
+		return iterations;
+	}
+
+	public double getBestCost() {
+		return bestCost;
+	}
+
+	// duration of the search in milliseconds
+	public double getDuration() {
+		return (endNanos - startNanos) / 1e6;
+	}
+
+	public double getIterationsPerSecond() {
+		return (endNanos == startNanos) ? 0 : iterations * 1e9 / (endNanos - startNanos);
+	}
+
+	// share of the iterations with neighbours that moved to one of them
+	public double getAcceptanceRate() {
+		long withNeighbours = iterations - emptyNeighbourhoods;
+		return (withNeighbours == 0) ? 0 : (double) accepted / withNeighbours;
+	}
+
+	static String csvHeader() {
+		return "phase,search,tasks,duration_ms,iterations,iterations_per_s,mean_neighbours,acceptance_rate,"
+				+ "empty_neighbourhoods,initial_cost,best_cost,neighbours_us,clone_share";
+	}
+
+	String toCsv() {
+		return String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%.0f,%.2f,%.4f,%d,%.1f,%.1f,%.2f,%.3f", phase, search, nbrTasks,
+				getDuration(), iterations, getIterationsPerSecond(), meanNeighbours(), getAcceptanceRate(),
+				emptyNeighbourhoods, initialCost, bestCost, meanNeighbourMicros(), cloneShare());
+	}
+
+	// the best cost curve, one line "phase,search,time_ms,best_cost" per improvement
+	String curveToCsv() {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < curveSize; i++) {
+			csv.append(String.format(Locale.ROOT, "%s,%s,%.3f,%.1f%n", phase, search, curveMicros[i] / 1000., curveCost[i]));
+		}
+		return csv.toString();
+	}
+
+	String toJson() {
+		StringBuilder curve = new StringBuilder();
+		for (int i = 0; i < curveSize; i++) {
+			curve.append(String.format(Locale.ROOT, "%s[%.3f, %.1f]", (i == 0) ? "" : ", ", curveMicros[i] / 1000.,
+					curveCost[i]));
+		}
+		return String.format(Locale.ROOT, "{\"phase\": \"%s\", \"search\": \"%s\", \"tasks\": %d, \"durationMs\": %.1f, "
+				+ "\"iterations\": %d, \"iterationsPerSecond\": %.0f, \"meanNeighbours\": %.2f, \"acceptanceRate\": %.4f, "
+				+ "\"emptyNeighbourhoods\": %d, \"initialCost\": %.1f, \"bestCost\": %.1f, \"neighboursMicros\": %.2f, "
+				+ "\"cloneShare\": %.3f, \"bestCostCurve\": [%s]}", phase, search, nbrTasks, getDuration(), iterations,
+				getIterationsPerSecond(), meanNeighbours(), getAcceptanceRate(), emptyNeighbourhoods, initialCost, bestCost,
+				meanNeighbourMicros(), cloneShare(), curve);
+	}
+
+	private double meanNeighbours() {
+		long withNeighbours = iterations - emptyNeighbourhoods;
+		return (withNeighbours == 0) ? 0 : (double) neighbours / withNeighbours;
+	}
+
+	// mean time to generate a neighbourhood in microseconds, over the sampled iterations
+	private double meanNeighbourMicros() {
+		return (sampledIterations == 0) ? 0 : neighbourNanos / 1000. / sampledIterations;
+	}
+
+	// share of the time generating the neighbourhoods spent cloning the solution, the rest evaluates the moves
+	private double cloneShare() {
+		return (neighbourNanos == 0) ? 0 : (double) cloneNanos / neighbourNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s %s: %d iterations in %.1f ms (%.0f/s), acceptance %.3f, cost %.1f -> %.1f",
+				phase, search, iterations, getDuration(), getIterationsPerSecond(), getAcceptanceRate(), initialCost, bestCost);
+	}
+}
@@ -0,0 +1,849 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+
+public class Solution implements Cloneable, Comparable<Solution> {
+	
+	/* the ways of building the first solution: random assignment, greedy cheapest insertion or regret-2 insertion
+	 * (the task whose best insertion is the most "regretted" if it is not done now is inserted first) */
+	public enum Init { RANDOM, CHEAPESTINSERTION, REGRET }
+	
+	// what we call Task in the following is either a task delivery or a task pickup, the data of the problem
+	// (weights, cities, vehicles and distances) is shared by all the solutions of a problem through the ProblemInstance
+	private final ProblemInstance problem;
+	private static final double pChangeVehicle = 0.05, pChangeOrder = 0.95; /* probabilities to chose the neighbourgh from the first or second way of generating
+	a neighbourgh, the probability to be in appendchangingTaskOrderToN is of pChangeOrder-pChangeVehicle */
+	private static final double pPickingEarly = 0.25, pPickingLate = 0.5, pDeliveringEarly = 0.75; // same as above but for the subtypes of newSolutions from appendchangingTaskOrderToN
+	private int[] nbrTasksVehicles; // number of tasks for each vehicle
+	
+	/* route-level caches, they are rebuilt for a vehicle only when a move changes its route (see updateVehicle).
+	 * The rows of the two dimensional arrays are shared between a solution and its clones until one of them changes
+	 * the route of that vehicle */
+	private int[][] route; // route[v][i] is the task vehicle v executes at time i
+	private int[][] load; // load[v][i] is the load of vehicle v after executing route[v][i]
+	private double[][] prefixDistance; // prefixDistance[v][i] is the distance vehicle v drove once it reaches route[v][i]
+	private int[][] pickupTimes; // the times at which every vehicle executes its pickup tasks, in increasing order
+	private int[] vehicleOf; // the vehicle executing every task
+	private int[] time; // the time at which every task is executed by its vehicle
+	private double[] vehicleCost; // cost of the route of every vehicle
+	private int[] movableVehicles; // the vehicles with at least one task to give to another vehicle, on the first nbrMovableVehicles positions
+	private int[] reorderableVehicles; // the vehicles with at least two tasks to reorder, on the first nbrReorderableVehicles positions
+	private int nbrMovableVehicles, nbrReorderableVehicles;
+	private int movedTask1 = -1, movedTask2 = -1; // the tasks (pickup and delivery pairs) moved by the move that created this solution
+
+	// solution characteristics:
+	int[] nextTask; // on position i, you find the offset of the next Task or -1 if the next Task is null
+	// that array is orderer by : [Task_0 (pickup), Task_0 (delivery), ..., Task_n
+	// (delivery), Vehicle_0, ..., Vehicle_m]
+	double cost; // cost of the current solution
+	
+
+	/*
+	 * generates a first valid solution of the problem with the given initialization method
+	 */	
+	public Solution(ProblemInstance problem, Init init) {
+		this(problem);
+		initialize(init);
+	}
+	
+	/*
+	 * builds the solution in which every vehicle v executes the Tasks routes[v] in that order, the routes must
+	 * respect the constraints of the problem
+	 */
+	Solution(ProblemInstance problem, int[][] routes) {
+		this(problem);
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			int previous = problem.nbrTasks + v;
+			for (int task: routes[v]) {
+				nextTask[previous] = task;
+				previous = task;
+			}
+		}
+		buildCaches();
+	}
+	
+	/*
+	 * builds a solution of problem from the solution previous of another problem with the same vehicles: the task t
+	 * of previous is the task newIndex[t] of problem (-1 if it isn't part of problem), it stays in the same vehicle and
+	 * in the same order. The tasks of problem that weren't in previous are then inserted at their cheapest position.
+	 */
+	public Solution(ProblemInstance problem, Solution previous, int[] newIndex) {
+		this(problem);
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			int last = problem.nbrTasks + v;
+			for (int task: previous.route[v]) {  // removing a task never breaks the capacity constraint
+				if (newIndex[task / 2] != -1) {
+					nextTask[last] = 2 * newIndex[task / 2] + task % 2;
+					last = nextTask[last];
+				}
+			}
+		}
+		insertionInitialization(false);
+		buildCaches();
+	}
+	
+	// allocates the arrays of a solution in which no vehicle has a task
+	private Solution(ProblemInstance problem) {
+		this.problem = problem;
+		nbrTasksVehicles = new int[problem.nbrVehicles];
+		route = new int[problem.nbrVehicles][];
+		load = new int[problem.nbrVehicles][];
+		prefixDistance = new double[problem.nbrVehicles][];
+		pickupTimes = new int[problem.nbrVehicles][];
+		vehicleOf = new int[problem.nbrTasks];
+		time = new int[problem.nbrTasks];
+		vehicleCost = new double[problem.nbrVehicles];
+		nextTask = new int[problem.nbrTasks + problem.nbrVehicles];
+		Arrays.fill(nextTask, -1); // default value is "next task is null"
+	}
+	
+	/*
+	 * builds the starting solution with the given method and computes its cost
+	 */
+	private void initialize(Init init) {
+		switch (init) {
+		case RANDOM:
+			randomInitialization();
+			break;
+		case CHEAPESTINSERTION:
+			insertionInitialization(false);
+			break;
+		case REGRET:
+			insertionInitialization(true);
+			break;
+		}
+		buildCaches();
+	}
+	
+	// builds the route-level caches from the nextTask array and computes our solution's score
+	private void buildCaches() {
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			updateVehicle(v);
+		}
+		updateEligibleVehicles();
+		computeCost();
+	}
+	
+	/* 
+	 * Starting solution, we assign the tasks randomly but so as to respect the	constraints:
+	 * every task is appended (pickup then delivery) to a random vehicle able to carry it
+	 */
+	private void randomInitialization() {
+		//Create relation between position of vehicle in nextTask array and (vehicleCapacity, vehicleCostPerKm)
+		int[] nextTaskVehicle = new int[problem.nbrVehicles]; // array containing the number of vehicles
+		for (int i = 0; i < problem.nbrVehicles; i++) {
+			nextTaskVehicle[i] = problem.nbrTasks + i; // offset in the nextTask array
+		}
+
+		List<Integer> permutation = new ArrayList<Integer>(); // random ordering of the tasks
+		for (int i = 0; i < problem.nbrTasks/2; i++) {
+			permutation.add(i);
+		}
+		Collections.shuffle(permutation, problem.generator);
+
+		for (int i : permutation) {
+			do {
+				int vehicle = problem.generator.nextInt(problem.nbrVehicles);
+				if (problem.vehicleCapacity[vehicle] >= problem.weight[2 * i]) {
+					nextTask[nextTaskVehicle[vehicle]] = 2 * i; // pickup task i
+					nextTask[2 * i] = 2 * i + 1; // delivering task i
+					nextTaskVehicle[vehicle] = 2 * i + 1;
+					nbrTasksVehicles[vehicle] += 2;  // vehicle now carry two additionnal tasks 
+					break;
+				}
+			} while (true);
+		}
+	}
+	
+	/*
+	 * Starting solution built by insertion: at each step, we insert one of the remaining tasks at its cheapest
+	 * position (pickup and delivery may be separated as long as the capacity is respected). If useRegret is false,
+	 * the task we insert is the one whose cheapest insertion is the cheapest, otherwise it is the one with the biggest
+	 * difference between its cheapest insertion in two different vehicles.
+	 * The best insertion of every task in every vehicle is cached and only recomputed for the vehicle that changed.
+	 * The tasks already in nextTask are kept where they are.
+	 */
+	private void insertionInitialization(boolean useRegret) {
+		int nbrPairs = problem.nbrTasks/2, nbrInserted = 0;
+		boolean[] inserted = new boolean[nbrPairs];
+		double[][] insertionCost = new double[nbrPairs][problem.nbrVehicles]; // cost of the best insertion of a task in a vehicle
+		int[][][] insertionPos = new int[nbrPairs][problem.nbrVehicles][2]; // the tasks after which we insert the pickup and the delivery
+		int[][] route = new int[problem.nbrVehicles][]; // route[v][i] is the i'th task of v, route[v][0] being the vehicle itself
+		int[][] load = new int[problem.nbrVehicles][]; // load[v][i] is the load of v after executing route[v][i]
+		
+		int[] routeLength = new int[problem.nbrVehicles];
+		
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			route[v] = new int[problem.nbrTasks + 1];
+			load[v] = new int[problem.nbrTasks + 1];
+			route[v][0] = problem.nbrTasks + v;
+			for (int task = nextTask[problem.nbrTasks + v]; task != -1; task = nextTask[task]) {
+				routeLength[v]++;
+				route[v][routeLength[v]] = task;
+				load[v][routeLength[v]] = load[v][routeLength[v] - 1] + problem.weight[task];
+				if (task % 2 == 0) {
+					inserted[task / 2] = true;
+					nbrInserted++;
+				}
+			}
+		}
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			for (int t = 0; t < nbrPairs; t++) {
+				if (!inserted[t]) {
+					insertionCost[t][v] = bestInsertion(2 * t, v, route[v], load[v], routeLength[v], insertionPos[t][v]);
+				}
+			}
+		}
+		
+		for (int step = nbrInserted; step < nbrPairs; step++) {
+			int bestTask = -1, bestVehicle = -1;
+			double bestScore = Double.NEGATIVE_INFINITY, bestScoreCost = Double.POSITIVE_INFINITY;
+			
+			for (int t = 0; t < nbrPairs; t++) {
+				if (inserted[t]) {
+					continue;
+				}
+				int cheapestVehicle = -1;
+				double cheapest = Double.POSITIVE_INFINITY, secondCheapest = Double.POSITIVE_INFINITY;
+				for (int v = 0; v < problem.nbrVehicles; v++) {
+					if (insertionCost[t][v] < cheapest) {
+						secondCheapest = cheapest;
+						cheapest = insertionCost[t][v];
+						cheapestVehicle = v;
+					} else if (insertionCost[t][v] < secondCheapest) {
+						secondCheapest = insertionCost[t][v];
+					}
+				}
+				// if a task fits in only one vehicle, its regret is infinite and it will be inserted first
+				double score = (useRegret) ? secondCheapest - cheapest : -cheapest;
+				if (score > bestScore || (score == bestScore && cheapest < bestScoreCost)) {
+					bestScore = score;
+					bestScoreCost = cheapest;
+					bestTask = t;
+					bestVehicle = cheapestVehicle;
+				}
+			}
+			
+			// insert the chosen task in nextTask
+			int pickup = 2 * bestTask, delivery = pickup + 1;
+			int beforePickup = insertionPos[bestTask][bestVehicle][0], beforeDelivery = insertionPos[bestTask][bestVehicle][1];
+			nextTask[pickup] = nextTask[beforePickup];
+			nextTask[beforePickup] = pickup;
+			if (beforeDelivery == beforePickup) { // the delivery directly follows the pickup
+				beforeDelivery = pickup;
+			}
+			nextTask[delivery] = nextTask[beforeDelivery];
+			nextTask[beforeDelivery] = delivery;
+			nbrTasksVehicles[bestVehicle] += 2;
+			inserted[bestTask] = true;
+			
+			// rebuild the route of the vehicle that changed and update the cached insertions in that vehicle
+			routeLength[bestVehicle] = 0;
+			for (int task = nextTask[problem.nbrTasks + bestVehicle]; task != -1; task = nextTask[task]) {
+				int i = ++routeLength[bestVehicle];
+				route[bestVehicle][i] = task;
+				load[bestVehicle][i] = load[bestVehicle][i - 1] + problem.weight[task];
+			}
+			for (int t = 0; t < nbrPairs; t++) {
+				if (!inserted[t]) {
+					insertionCost[t][bestVehicle] = bestInsertion(2 * t, bestVehicle, route[bestVehicle], load[bestVehicle],
+							routeLength[bestVehicle], insertionPos[t][bestVehicle]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Computes the cheapest capacity-feasible way of inserting a pickup and its delivery in the route of a vehicle
+	 * 
+	 * @param pickup: the pickup task to insert (the delivery is pickup + 1)
+	 * @param v: the vehicle in which we insert the task
+	 * @param route: the tasks of the vehicle in order, route[0] being the vehicle itself
+	 * @param load: the load of the vehicle after executing each task of route
+	 * @param routeLength: number of tasks in the route (route[routeLength] is the last one)
+	 * @param position: array of size 2 that will contain the tasks after which the pickup and delivery must be inserted
+	 * (the same task twice if the delivery is done right after the pickup)
+	 * @return the cost of the insertion or Double.POSITIVE_INFINITY if the task can't be inserted
+	 */
+	private double bestInsertion(int pickup, int v, int[] route, int[] load, int routeLength, int[] position) {
+		int delivery = pickup + 1;
+		double[][] distance = problem.distance;
+		double best = Double.POSITIVE_INFINITY;
+		
+		for (int i = 0; i <= routeLength; i++) {
+			if (load[i] + problem.weight[pickup] > problem.vehicleCapacity[v]) { // we can't pickup the task after route[i]
+				continue;
+			}
+			double pickupDetour;
+			// delivery right after the pickup
+			double cost = distance[route[i]][pickup] + distance[pickup][delivery];
+			if (i < routeLength) {
+				cost += distance[delivery][route[i+1]] - distance[route[i]][route[i+1]];
+				pickupDetour = distance[route[i]][pickup] + distance[pickup][route[i+1]] - distance[route[i]][route[i+1]];
+			} else {
+				pickupDetour = 0; // not used since there is no task after route[i]
+			}
+			if (cost < best) {
+				best = cost;
+				position[0] = route[i];
+				position[1] = route[i];
+			}
+			
+			// delivery later in the route, the tasks between the pickup and the delivery carry the additional weight
+			for (int j = i + 1; j <= routeLength && load[j] + problem.weight[pickup] <= problem.vehicleCapacity[v]; j++) {
+				cost = pickupDetour + distance[route[j]][delivery];
+				if (j < routeLength) {
+					cost += distance[delivery][route[j+1]] - distance[route[j]][route[j+1]];
+				}
+				if (cost < best) {
+					best = cost;
+					position[0] = route[i];
+					position[1] = route[j];
+				}
+			}
+		}
+		return best * problem.vehicleCostPerKm[v];
+	}
+	
+	/*
+	 * generates neighbours of the current solution by moving the first task from vehicle A to other vehicles
+	 * and by moving a pickup and deliver tasks inside of a vehicle.
+	 * The type of move is drawn at random, if it is impossible for this solution (e.g. no vehicle has two tasks
+	 * to reorder) or gives no valid neighbour, we fall back to the other types. The returned list is thus only
+	 * empty if no move can be applied, see hasNeighbours.
+	 */
+	public ArrayList<Solution> generateNeighbours() {
+		ArrayList<Solution> Neighbourgs = new ArrayList<Solution>();
+		double proba = problem.generator.nextDouble();
+		int firstMove = (proba < pChangeVehicle) ? 0 : (proba < pChangeOrder) ? 1 : 2;
+		
+		for (int i = 0; i < 3 && Neighbourgs.isEmpty(); i++) {
+			switch ((firstMove + i) % 3) {
+			case 0:
+				generateChangingVehicle(Neighbourgs);
+				break;
+			case 1:
+				generateChangingTaskOrder(Neighbourgs);
+				break;
+			case 2:
+				generateSwapTwoTasks(Neighbourgs);
+				break;
+			}
+		}
+		return Neighbourgs;
+	}
+	
+	/*
+	 * return false if no neighbour can ever be generated from this solution (no vehicle has a task
+	 * it could give to another vehicle and no vehicle has two tasks to reorder), in that case searching
+	 * further from it is useless
+	 */
+	public boolean hasNeighbours() {
+		return (problem.nbrVehicles > 1 && nbrMovableVehicles > 0) || nbrReorderableVehicles > 0;
+	}
+	
+	/*
+	 * moving a random task from a random vehicle to the beginning of every other vehicle able to carry it
+	 */
+	private void generateChangingVehicle(ArrayList<Solution> N) {
+		if (problem.nbrVehicles < 2 || nbrMovableVehicles == 0) {
+			return;
+		}
+		int v1 = movableVehicles[problem.generator.nextInt(nbrMovableVehicles)];
+		
+		// find a pickup task at a random offset
+		int pickupTime = pickupTimes[v1][problem.generator.nextInt(nbrTasksVehicles[v1]/2)];
+		int beforePickup = (pickupTime == 0) ? problem.nbrTasks+v1 : route[v1][pickupTime-1];
+		for (int v2 = 0; v2 < problem.nbrVehicles; v2++) {
+			if (v2 != v1) {
+				if (problem.weight[nextTask[beforePickup]] <= problem.vehicleCapacity[v2]) {
+					/*
+					 * Check with vehicleCapacity instead of remainingCapacity because the delivery happens immediatly after pickup
+					 * */
+					appendchangingVehicleToN(N, v1, v2, beforePickup);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * moving a random task order inside of a random vehicle with at least four tasks (two times pickup and delivery)
+	 */
+	private void generateChangingTaskOrder(ArrayList<Solution> N) {
+		if (nbrReorderableVehicles == 0) {
+			return;
+		}
+		int v1 = reorderableVehicles[problem.generator.nextInt(nbrReorderableVehicles)];
+		int pickup = route[v1][pickupTimes[v1][problem.generator.nextInt(nbrTasksVehicles[v1]/2)]];
+		appendchangingTaskOrderToN(N, v1, time[pickup], time[pickup+1]);
+	}
+	
+	/*
+	 * swapping two random tasks inside of a random vehicle with at least four tasks
+	 */
+	private void generateSwapTwoTasks(ArrayList<Solution> N) {
+		if (nbrReorderableVehicles == 0) {
+			return;
+		}
+		int v1 = reorderableVehicles[problem.generator.nextInt(nbrReorderableVehicles)];
+		int nbrPickups = nbrTasksVehicles[v1]/2;
+		int offsetPickup = problem.generator.nextInt(nbrPickups);
+		int offsetPickup2 = problem.generator.nextInt(nbrPickups - 1);
+		if (offsetPickup2 >= offsetPickup) { // uniform over the other pickups
+			offsetPickup2++;
+		}
+		appendSwapTwoTasksToN(N, v1, pickupTimes[v1][offsetPickup], pickupTimes[v1][offsetPickup2]);
+	}
+
+	/**
+	 * This procedure will add a new solution to N where the first pickup task 
+	 * (and the corresponding delivery task) will have been moved from v1 to the two first
+	 * positions of v2
+	 * 
+	 * @param N: the arraylist we will append the new solutions to
+	 * @param v1: first vehicle. The index of the vehicles goes from 0 to nbrVehicle - 1
+	 * @param v2: second vehicle. The index of the vehicles goes from 0 to nbrVehicle - 1
+	 * @param beforePickup: the task preceding the pickup task we want to move from v1 to v2 (might be v1's index rather than a task)
+	 */
+	private void appendchangingVehicleToN(ArrayList<Solution> N, int v1, int v2, int beforePickup) {
+		try {
+			Solution newSol = (Solution) this.clone();
+			// remove these tasks from v1
+			int pickup = nextTask[beforePickup];
+			int delivery = pickup + 1;			
+			
+			// remove these tasks from v1
+			if (nextTask[pickup] != delivery) {  // delivery is not second action performed by vehicle
+				int beforeDelivery = nextTask[pickup];
+				for (; nextTask[beforeDelivery] != delivery; beforeDelivery = nextTask[beforeDelivery]) {} // set beforeDelivery to the predecessor of delivery
+				
+				newSol.nextTask[beforePickup] = nextTask[pickup];
+				newSol.nextTask[beforeDelivery] = nextTask[delivery];  // might be -1 
+			} else {
+				newSol.nextTask[beforePickup] = nextTask[delivery];
+			}
+			
+			newSol.setMovedTasks(pickup/2, -1);
+			newSol.nextTask[problem.nbrTasks + v2] = pickup;
+			newSol.nextTask[pickup] = delivery;
+			newSol.nextTask[delivery] = nextTask[problem.nbrTasks + v2];  // the previously first task of v2
+			
+			newSol.updateVehicle(v1);
+			newSol.updateVehicle(v2);
+			newSol.computeCost();  // we shall not forget to update the score of newSol
+			N.add(newSol); 
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creates new Solutions where a pickup and deliver tasks are moved inside of a vehicle priority list
+	 * before and after as much as possible as long as they don't rape the constraints.
+	 * Ex: if t_pick happens 3rd and can happen 1st without raping constraints, a solution will contain
+	 * t_pick in first position, another t_pick in second position, and others where t_pick was postponed, t_del was preponed
+	 * and t_del was postponed
+	 * The solutions are added to N
+	 * 
+	 * @param N: the arraylist we will append the new solutions to
+	 * @param v: index of the vehicle inside of which task order will change
+	 * @param pickupTOffset: time index of pickup task. Vehicle v would execute pickup task on time pickupTOffset
+	 * @param deliveryTOffset: time index of deliver task. Vehicle v would execute deliver task on time deliverTOffset
+	 */
+	private void appendchangingTaskOrderToN(ArrayList<Solution> N, int v, int pickupTOffset, int deliveryTOffset) {
+		
+		double proba = problem.generator.nextDouble();
+		int[] timeVehicle = route[v], vehicleLoad = load[v]; // the tasks and the load of the vehicle at each time offset
+		int pickup = timeVehicle[pickupTOffset], delivery = timeVehicle[deliveryTOffset];
+		int prevPickup = (pickupTOffset == 0) ? problem.nbrTasks+v : timeVehicle[pickupTOffset - 1];
+		try {
+			if (proba < pPickingEarly) {
+				/* pickuing up earlier, we can prepone the picking up from one element iteratively
+				 * as long as we don't go before a deliveryTask A such that we could not have picked
+				 * up our task before delivering A
+				*/
+				for(int i = pickupTOffset - 1; i >= 0; i--) {
+					if (timeVehicle[i] % 2 == 1 && problem.vehicleCapacity[v] - vehicleLoad[i-1] < problem.weight[pickup]) {
+						break;
+					} else {  // we can pickup one step earlier
+						Solution newSol = (Solution) this.clone();
+						newSol.setMovedTasks(pickup/2, -1);
+						if (i == 0) { // we will place the pickup first
+							newSol.nextTask[problem.nbrTasks+v] = pickup;
+							newSol.nextTask[pickup] = nextTask[problem.nbrTasks+v];
+						} else {
+							newSol.nextTask[timeVehicle[i-1]] = pickup;
+							newSol.nextTask[pickup] = timeVehicle[i];
+						}
+						newSol.nextTask[timeVehicle[pickupTOffset-1]] = timeVehicle[pickupTOffset+1];  // skip pickup
+						newSol.updateVehicle(v);
+						newSol.computeCost();
+						N.add(newSol);
+					}
+				}
+			} else if (proba < pPickingLate) {
+				/* picking up later, we can postpone the pickup as long as we don't pickup our task after
+				 * having delivered it
+				 */
+				for (int i = pickupTOffset + 1; i < deliveryTOffset; i++) {
+					Solution newSol = (Solution) this.clone();
+					newSol.setMovedTasks(pickup/2, -1);
+					newSol.nextTask[prevPickup] = nextTask[pickup];
+					newSol.nextTask[timeVehicle[i]] = pickup;
+					newSol.nextTask[pickup] = timeVehicle[i+1];
+					newSol.updateVehicle(v);
+					newSol.computeCost();
+					N.add(newSol);
+				}
+			} else if (proba < pDeliveringEarly) {
+				/* delivering earlier, we can prepone the delivery as long as we don't deliver before having
+				 * picked up
+				 */
+				for (int i = deliveryTOffset - 1; i > pickupTOffset; i--) {
+					Solution newSol = (Solution) this.clone();
+					newSol.setMovedTasks(pickup/2, -1);
+					newSol.nextTask[timeVehicle[i-1]] = delivery;
+					newSol.nextTask[timeVehicle[deliveryTOffset-1]] = (deliveryTOffset == timeVehicle.length - 1) ? -1 : timeVehicle[deliveryTOffset+1]; // in case
+					// the delivery is the last task
+					newSol.nextTask[delivery] = timeVehicle[i];
+					newSol.updateVehicle(v);
+					newSol.computeCost();
+					N.add(newSol);
+				}
+			} else {
+				/* delivering later, we can postpone the delivery from one element iteratively as
+				 * long as we don't go after a pickup task that we could not have picked up before delivering 
+				 */
+				for (int i = deliveryTOffset + 1; i < timeVehicle.length; i++) {
+					if (timeVehicle[i] % 2 == 0 && problem.vehicleCapacity[v] - vehicleLoad[i] < -problem.weight[delivery]) { // the weight of a 
+						// delivery is defined as a negative number, thus we add a "-"
+						break;
+					} else {
+						Solution newSol = (Solution) this.clone();
+						newSol.setMovedTasks(pickup/2, -1);
+						newSol.nextTask[timeVehicle[deliveryTOffset-1]] = timeVehicle[deliveryTOffset+1];
+						newSol.nextTask[timeVehicle[i]] = delivery;
+						newSol.nextTask[delivery] = nextTask[timeVehicle[i]];
+						newSol.updateVehicle(v);
+						newSol.computeCost();
+						N.add(newSol);
+					}
+				}
+			}
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * swaps two tasks (pickup1 <-> pickup2 and delivery1 <-> delivery2) and the new solution to N if it
+	 * is valid, the validity is checked on the load profile of the vehicle before creating the new solution
+	 * 
+	 * @param N: the arraylist we will append the new solution to
+	 * @param v: index of the vehicle inside of which tasks will be swapped
+	 * @param pickup1Time: time at which the vehicle picks up task 1
+	 * @param pickup2Time: time at which the vehicle picks up task 2
+	 */
+	private void appendSwapTwoTasksToN(ArrayList<Solution> N, int v, int pickup1Time, int pickup2Time) {
+		try {
+			int[] timeVehicle = route[v];
+			int pickup1 = timeVehicle[pickup1Time], pickup2 = timeVehicle[pickup2Time];
+			int delivery1Time = time[pickup1+1], delivery2Time = time[pickup2+1];
+			
+			// check if new solution is valid: task 2 is now carried between pickup1Time and delivery1Time and
+			// task 1 between pickup2Time and delivery2Time
+			int weightDiff = problem.weight[pickup2] - problem.weight[pickup1];
+			if (weightDiff != 0) {
+				for (int i = Math.min(pickup1Time, pickup2Time), end = Math.max(delivery1Time, delivery2Time); i < end; i++) {
+					int newLoad = load[v][i];
+					if (i >= pickup1Time && i < delivery1Time) {
+						newLoad += weightDiff;
+					}
+					if (i >= pickup2Time && i < delivery2Time) {
+						newLoad -= weightDiff;
+					}
+					if (newLoad > problem.vehicleCapacity[v]) {
+						return;
+					}
+				}
+			}
+			
+			// swap the tasks, we will reconstruct the nextTask array from 0 for v (simpler that perfomring two swaps)
+			Solution newSol = (Solution) this.clone();
+			newSol.setMovedTasks(pickup1/2, pickup2/2);
+			int previous = problem.nbrTasks+v;
+			for (int i = 0; i < timeVehicle.length; i++) {
+				int task = timeVehicle[i];
+				if (i == pickup1Time) { // swap p1 and p2
+					task = pickup2;
+				} else if (i == pickup2Time) {
+					task = pickup1;
+				} else if (i == delivery1Time) {
+					task = pickup2+1;
+				} else if (i == delivery2Time) {
+					task = pickup1+1;
+				}
+				newSol.nextTask[previous] = task;
+				previous = task;
+			}
+			newSol.nextTask[previous] = -1; // we have done our last task
+						
+			newSol.updateVehicle(v);
+			newSol.computeCost();
+			N.add(newSol);
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param tasks: the list of tasks that were given as arguments to the constructor we come from tasks is of type ArrayList to guarantee O(1) access
+	 * @return the list of plans associated with the solution
+	 */
+	public List<Plan> getPlans(ArrayList<Task> tasks) {
+		return getPlans(tasks, false);
+	}
+	
+	/**
+	 * same as above, if printNextTask is true the nextTask array is printed first (debugging)
+	 * the moves are appended along the next hop table of the topology so that no path list is built
+	 */
+	public List<Plan> getPlans(ArrayList<Task> tasks, boolean printNextTask) {
+		if (printNextTask) {
+			System.out.println("-----");
+			System.out.println(Arrays.toString(nextTask));
+			System.out.println("-----");
+		}
+		List<Plan> plans = new ArrayList<Plan>(problem.nbrVehicles);
+		RoutingTable routing = (problem.nbrTasks == 0) ? null : RoutingTable.of(problem.city[0]);
+        for (int i = problem.nbrTasks; i < nextTask.length; i++) {
+        	Plan plan = new Plan(problem.city[i]);
+        	City prevCity = problem.city[i];
+        	for (int j = nextTask[i]; j != -1; prevCity = problem.city[j], j = nextTask[j]) {
+        		routing.appendMoves(plan, prevCity, problem.city[j]);
+        		if (j % 2 == 0) {  // pickup task
+        			plan.appendPickup(tasks.get(j/2)); // we get the corresponding offset in tasks by dividing by 2
+        		} else {
+        			plan.appendDelivery(tasks.get(j/2));
+        		}
+        	}
+        	plans.add(plan);
+        	
+        }
+		return plans;
+	}
+	
+
+	/*
+	 * return a solution in which the route of every vehicle reached a local optimum of the relocate, Or-opt and 2-opt
+	 * moves (see RouteOptimizer), the tasks keep their vehicle. Return this solution if no route could be improved
+	 */
+	public Solution polishRoutes() {
+		Solution polished = this;
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			if (nbrTasksVehicles[v] < 4) {  // a single task can't be reordered
+				continue;
+			}
+			RouteOptimizer optimizer = new RouteOptimizer(problem, v, route[v]);
+			if (optimizer.optimize()) {
+				if (polished == this) {
+					try {
+						polished = (Solution) clone();
+					} catch (CloneNotSupportedException e) {
+						e.printStackTrace();
+						return this;
+					}
+					polished.setMovedTasks(-1, -1);
+				}
+				int previous = problem.nbrTasks + v;
+				for (int task: optimizer.getRoute()) {
+					polished.nextTask[previous] = task;
+					previous = task;
+				}
+				polished.nextTask[previous] = -1;
+				polished.updateVehicle(v);
+			}
+		}
+		if (polished != this) {
+			polished.computeCost();
+		}
+		return polished;
+	}
+
+	/*
+	 * writes in cities the cities vehicle v goes through to execute its Tasks (its home city first) and in weights the
+	 * change of its load at each of them (0 for the home city), return the number of cities written. The arrays must
+	 * be long enough for the route
+	 */
+	public int getRoute(int v, City[] cities, int[] weights) {
+		cities[0] = problem.city[problem.nbrTasks + v];
+		weights[0] = 0;
+		for (int i = 0; i < nbrTasksVehicles[v]; i++) {
+			cities[i + 1] = problem.city[route[v][i]];
+			weights[i + 1] = problem.weight[route[v][i]];
+		}
+		return nbrTasksVehicles[v] + 1;
+	}
+
+	// number of Tasks (pickups and deliveries) vehicle v executes
+	public int getRouteLength(int v) {
+		return nbrTasksVehicles[v];
+	}
+
+	// cost getter
+	public double getCost() {
+		return cost;
+	}
+	
+	/*
+	 * return the Zobrist hash of the solution, two solutions with the same nextTask array have the same hash
+	 */
+	public long hash() {
+		long[][] keys = problem.zobristKeys();
+		long hash = 0;
+		for (int i = 0; i < nextTask.length; i++) {
+			hash ^= keys[i][nextTask[i] + 1];
+		}
+		return hash;
+	}
+	
+	// sets the tasks moved by the move that created this solution (-1 if unused)
+	private void setMovedTasks(int task1, int task2) {
+		movedTask1 = task1;
+		movedTask2 = task2;
+	}
+	
+	// return the first task moved by the move that created this solution, -1 for an initial solution
+	public int getMovedTask1() {
+		return movedTask1;
+	}
+	
+	// return the second task moved by the move that created this solution, -1 if it moved only one task
+	public int getMovedTask2() {
+		return movedTask2;
+	}
+	
+	// problem getter
+	public ProblemInstance getProblem() {
+		return problem;
+	}
+	
+	/**
+	 * Computes the score of the solution from the cost of the route of every vehicle
+	 */
+	private void computeCost() {
+		cost = 0;
+		for (int i = 0; i < problem.nbrVehicles; i++) {
+			cost += vehicleCost[i];
+		}
+	}
+	
+	/*
+	 * rebuilds the route-level caches of vehicle v from the nextTask array, the rows of v are newly allocated
+	 * since they may be shared with the solution we were cloned from
+	 */
+	private void updateVehicle(int v) {
+		int previousLength = nbrTasksVehicles[v], length = 0;
+		for (int task = nextTask[problem.nbrTasks+v]; task != -1; task = nextTask[task]) {
+			length++;
+		}
+		int[] vehicleRoute = new int[length], vehicleLoad = new int[length], vehiclePickupTimes = new int[length/2];
+		double[] vehicleDistance = new double[length];
+		int currentLoad = 0, nbrPickups = 0;
+		double distance = 0;
+		for (int i = 0, previous = problem.nbrTasks+v, task = nextTask[previous]; task != -1; previous = task, task = nextTask[task], i++) {
+			vehicleRoute[i] = task;
+			currentLoad += problem.weight[task];
+			vehicleLoad[i] = currentLoad;
+			distance += problem.distance[previous][task];
+			vehicleDistance[i] = distance;
+			vehicleOf[task] = v;
+			time[task] = i;
+			if (task % 2 == 0) {
+				vehiclePickupTimes[nbrPickups++] = i;
+			}
+		}
+		route[v] = vehicleRoute;
+		load[v] = vehicleLoad;
+		prefixDistance[v] = vehicleDistance;
+		pickupTimes[v] = vehiclePickupTimes;
+		nbrTasksVehicles[v] = length;
+		vehicleCost[v] = problem.vehicleCostPerKm[v] * distance;
+		
+		if (movableVehicles != null && ((previousLength >= 2) != (length >= 2) || (previousLength >= 4) != (length >= 4))) {
+			updateEligibleVehicles();  // v changed of category
+		}
+	}
+	
+	/*
+	 * rebuilds the indexes of the vehicles on which the moves of generateNeighbours can be applied, the arrays
+	 * are newly allocated since they may be shared with the solution we were cloned from
+	 */
+	private void updateEligibleVehicles() {
+		movableVehicles = new int[problem.nbrVehicles];
+		reorderableVehicles = new int[problem.nbrVehicles];
+		nbrMovableVehicles = 0;
+		nbrReorderableVehicles = 0;
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			if (nbrTasksVehicles[v] >= 2) {
+				movableVehicles[nbrMovableVehicles++] = v;
+			}
+			if (nbrTasksVehicles[v] >= 4) {
+				reorderableVehicles[nbrReorderableVehicles++] = v;
+			}
+		}
+	}
+	
+
+	/* 
+	 * clone method that performs a deep cloning of the array nextTask and of the per task arrays,
+	 * the per vehicle routes are copied on write by updateVehicle
+	 */
+	public Object clone() throws CloneNotSupportedException {
+		Solution clone = (Solution) super.clone();
+		clone.nextTask = Arrays.copyOf(clone.nextTask, clone.nextTask.length);
+		clone.nbrTasksVehicles = Arrays.copyOf(nbrTasksVehicles, problem.nbrVehicles);
+		clone.vehicleOf = Arrays.copyOf(vehicleOf, vehicleOf.length);
+		clone.time = Arrays.copyOf(time, time.length);
+		clone.vehicleCost = Arrays.copyOf(vehicleCost, problem.nbrVehicles);
+		// the rows are shared, only the outer arrays are copied
+		clone.route = Arrays.copyOf(route, problem.nbrVehicles);
+		clone.load = Arrays.copyOf(load, problem.nbrVehicles);
+		clone.prefixDistance = Arrays.copyOf(prefixDistance, problem.nbrVehicles);
+		clone.pickupTimes = Arrays.copyOf(pickupTimes, problem.nbrVehicles);
+		return clone;
+	}
+	
+
+	/**
+	 * @param array: array of tasks for which pos i needs to be switched with pos j
+	 * @param i: index of task i
+	 * @param j: index of task j
+	 * This has nothing to do with the current class but java does not provide the functionality
+	 */
+	public static final void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+	// comparison so as to sort the elements from their score, the difference is rounded to -1, 0 or +1
+	public int compareTo(Solution s2) {
+		double diff = this.cost - s2.cost;
+		if (diff < 0) {
+			return -1;
+		} else if (diff > 0) {
+			return 1;
+		} else {
+			return 0;
+		}
+	}
+}
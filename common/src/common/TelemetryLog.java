@@ -0,0 +1,117 @@
+package common;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import logist.agent.Agent;
+
+/*
+ * Writes the telemetry of the searches of an agent, one search (one plan, one bid, ...) at a time, in the directory
+ * given by the property "telemetry" of the agent (no telemetry is recorded without it):
+ * - <agent>-searches.csv: one line per search (iterations per second, neighbourhood size, acceptance rate, ...)
+ * - <agent>-curves.csv: the best cost over time of every search
+ * - <agent>-searches.json: one JSON object per line and per search, with its best cost curve
+ * The files are appended to so that the games of a tournament end up in the same files. The property
+ * "telemetry-sample" is the number of iterations between two timings of the neighbourhood generation (64 by default).
+ * The files are written by a background thread: the searches call write before they return, inside the deadline of
+ * their watchdog, so they only queue their telemetry. What is still queued when the JVM exits is written by a
+ * shutdown hook.
+ */
+public class TelemetryLog {
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "telemetry-writer");
+			thread.setDaemon(true);  // must not keep the platform alive once the game is over
+			return thread;
+		}
+	});
+	private static final long EXIT_WAIT = 10; // in s, how long the JVM waits for the queued telemetry at its exit
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("telemetry-flush") {
+			@Override
+			public void run() {
+				writer.shutdown();
+				try {
+					writer.awaitTermination(EXIT_WAIT, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private final File searches, curves, json;
+	private final int samplePeriod;
+
+	private TelemetryLog(File directory, String agentName, int samplePeriod) {
+		directory.mkdirs();
+		searches = new File(directory, agentName + "-searches.csv");
+		curves = new File(directory, agentName + "-curves.csv");
+		json = new File(directory, agentName + "-searches.json");
+		this.samplePeriod = samplePeriod;
+	}
+
+	// the log of the agent, null if its telemetry is off
+	public static TelemetryLog of(Agent agent) {
+		String directory = agent.readProperty("telemetry", String.class, "none");
+		if (directory.equals("none")) {
+			return null;
+		}
+		return new TelemetryLog(new File(directory), agent.name(), agent.readProperty("telemetry-sample", Integer.class, 64));
+	}
+
+	// telemetry for a search about to start
+	public SearchTelemetry start(String phase, String search, int nbrTasks) {
+		return new SearchTelemetry(phase, search, nbrTasks, samplePeriod);
+	}
+
+	/*
+	 * queues the telemetry of a search that ended to be appended to the files, searches that didn't iterate are left
+	 * out. The telemetry must not change afterwards. The logs of the agents of the same name (e.g. in the games played
+	 * in parallel by tools.AuctionSimulator) share the files, the single writer thread keeps their lines apart
+	 */
+	public void write(final SearchTelemetry telemetry) {
+		if (telemetry.getIterations() == 0) {
+			return;
+		}
+		try {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						append(searches, SearchTelemetry.csvHeader(), telemetry.toCsv() + System.lineSeparator());
+						append(curves, "phase,search,time_ms,best_cost", telemetry.curveToCsv());
+						append(json, null, telemetry.toJson() + System.lineSeparator());
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {  // the JVM is exiting
+			System.out.println("The telemetry of a search ending during the exit is lost");
+		}
+	}
+
+	// appends lines to file, header first if the file is new
+	private static void append(File file, String header, String lines) throws IOException {
+		boolean isNew = !file.exists() || file.length() == 0;
+		PrintWriter writer = new PrintWriter(new FileWriter(file, true));
+		try {
+			if (isNew && header != null) {
+				writer.println(header);
+			}
+			writer.print(lines);
+		} finally {
+			writer.close();
+		}
+	}
+}
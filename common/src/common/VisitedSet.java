@@ -0,0 +1,32 @@
+package common;
+
+/*
+ * Fixed size memory of the hashes (see Solution.hash) of the solutions visited by a search. It is a direct mapped
+ * table: a new hash overwrites the one stored in its slot, so old solutions are slowly forgotten and the memory used
+ * does not grow with the number of iterations.
+ */
+public class VisitedSet {
+	private final long[] table;
+	private final int mask;
+
+	// creates a memory of 2^log2Size slots
+	public VisitedSet(int log2Size) {
+		table = new long[1 << log2Size];
+		mask = table.length - 1;
+	}
+
+	// remembers the given hash
+	public void add(long hash) {
+		table[slot(hash)] = hash;
+	}
+
+	// return true if the hash was visited and not forgotten yet
+	public boolean contains(long hash) {
+		return hash != 0 && table[slot(hash)] == hash;  // 0 is the value of the empty slots
+	}
+
+	// the slot of a hash, the high bits are mixed in since the keys are random on all bits anyway
+	private int slot(long hash) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
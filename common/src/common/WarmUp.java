@@ -0,0 +1,54 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+/*
+ * Synthetic problems on the real topology for the agents to run their searches on during setup, so that the first
+ * bids and plans run code the JIT already compiled (Solution.generateNeighbours, the costs of the routes, the
+ * polishing, ...) and get as many iterations as the next ones. The problems grow from one to the next like the ones
+ * of an auction do, and their tasks are light enough for any vehicle to carry a few of them.
+ */
+public class WarmUp {
+	private static final int[] SIZES = { 5, 10, 20, 30 }; // number of tasks of the problems, in turn
+	private final List<City> cities;
+	private final int weight;
+	private final Random random = new Random(0);
+	private int nbrProblems = 0;
+
+	public WarmUp(List<City> cities, List<Vehicle> vehicles) {
+		this.cities = cities;
+		int minCapacity = Integer.MAX_VALUE;
+		for (Vehicle vehicle: vehicles) {
+			minCapacity = Math.min(minCapacity, vehicle.capacity());
+		}
+		weight = Math.max(1, minCapacity / 5);
+	}
+
+	/*
+	 * the time limit of the warm-up of a setup that started at start: half of the setup timeout and at most maxTime
+	 * milliseconds, the agent keeps the other half for the rest of its setup
+	 */
+	public static long timeLimit(long start, long setupTimeout, long maxTime) {
+		return start + Math.min(maxTime, setupTimeout / 2);
+	}
+
+	// the tasks of the next problem, between random cities
+	public ArrayList<Task> nextTasks() {
+		int size = SIZES[nbrProblems++ % SIZES.length];
+		ArrayList<Task> tasks = new ArrayList<Task>(size);
+		for (int i = 0; i < size; i++) {
+			City pickup = cities.get(random.nextInt(cities.size())), delivery;
+			do {
+				delivery = cities.get(random.nextInt(cities.size()));
+			} while (delivery == pickup && cities.size() > 1);
+			tasks.add(new Task(i, pickup, delivery, 0, weight));
+		}
+		return tasks;
+	}
+}
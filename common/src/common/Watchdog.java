@@ -0,0 +1,97 @@
+package common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Makes sure a timed entry point (plan, askPrice) returns on time even if its search overshoots its time limit (a long
+ * iteration, a pause of the JIT or of the GC): the search runs on a worker thread and publishes every solution better
+ * than the ones it found before in a BestSoFar, the caller waits for it until a hard deadline and takes the best
+ * solution so far if it isn't over by then. A search that missed its deadline is interrupted and left to end on the
+ * worker, it must not change anything the caller uses once it returned (the solutions are never changed once
+ * created, so publishing them is enough). The workers are daemon threads, created when needed.
+ */
+public class Watchdog {
+	private final ExecutorService workers;
+	private final AtomicLong missedDeadlines = new AtomicLong();
+
+	public Watchdog(final String name) {
+		workers = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);  // must not keep the platform alive once the game is over
+				return thread;
+			}
+		});
+	}
+
+	/*
+	 * return what search returns if it is over by deadline, the best solution it published in best otherwise (or if it
+	 * threw). A search with a deadline already over runs on the calling thread, it has no time to search anyway
+	 */
+	public Solution call(Callable<Solution> search, BestSoFar best, long deadline) {
+		if (deadline <= System.currentTimeMillis()) {
+			try {
+				return search.call();
+			} catch (Exception e) {
+				e.printStackTrace();
+				return best.get();
+			}
+		}
+		Future<Solution> result = workers.submit(search);
+		try {
+			return result.get(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			System.out.println("The search missed its deadline, we return its best solution so far");
+			missedDeadlines.incrementAndGet();
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+		return best.get();
+	}
+
+	// return the number of searches that didn't end by their deadline since the creation of the watchdog
+	public long getMissedDeadlines() {
+		return missedDeadlines.get();
+	}
+
+	// interrupts the searches still running, the watchdog can't be used afterwards
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	/*
+	 * the best solution a search found so far, written by the search and read by the caller when the deadline is over
+	 */
+	public static class BestSoFar {
+		private final AtomicReference<Solution> best;
+
+		public BestSoFar(Solution start) {
+			best = new AtomicReference<Solution>(start);
+		}
+
+		// keeps solution if it is better than the best one so far, only the search calls it
+		public void offer(Solution solution) {
+			if (solution.getCost() < best.get().getCost()) {
+				best.set(solution);
+			}
+		}
+
+		public Solution get() {
+			return best.get();
+		}
+	}
+}
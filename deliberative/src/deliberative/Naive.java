@@ -1,5 +1,6 @@
 package deliberative;
 
+import common.RoutingTable;
 import logist.plan.Plan;
 import logist.task.Task;
 import logist.topology.Topology.City;
@@ -10,17 +11,16 @@ public class Naive implements Algorithm{
 	public Plan plan(State initState) {
 		City current = initState.getCity();
 		Plan plan = new Plan(current);
+		RoutingTable routing = RoutingTable.of(current);
 		
 		for (Task task : initState.getAvailableTasks()) {
 			// move: current city => pickup location
-			for (City city : current.pathTo(task.pickupCity))
-				plan.appendMove(city);
+			routing.appendMoves(plan, current, task.pickupCity);
 
 			plan.appendPickup(task);
 
 			// move: pickup location => delivery location
-			for (City city : task.path())
-				plan.appendMove(city);
+			routing.appendMoves(plan, task.pickupCity, task.deliveryCity);
 
 			plan.appendDelivery(task);
 
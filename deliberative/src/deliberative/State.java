@@ -2,9 +2,8 @@ package deliberative;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
+import common.RoutingTable;
 import logist.plan.Plan;
 import logist.task.Task;
 import logist.task.TaskSet;
@@ -15,6 +14,7 @@ public class State implements Cloneable, Comparable<State> {
 	private Task[] pickedUpTasks; // we use arrays of size 0 instead of null when the array is empty
 	State parent;
 	private City city;
+	private RoutingTable routing; // distances and paths of the topology
 	private int remainingCapacity;
 	double cost; // cost of the state, simply the total distance from base state
 	double heuristic; // cost of the heuristic
@@ -24,6 +24,7 @@ public class State implements Cloneable, Comparable<State> {
 	 *  VehicleCapacity is assumed to be bigger than the sum of the weight of the pickedUpTasks */
 	public State(City city, TaskSet availableTasks, TaskSet pickedUpTasks, int VehicleCapacity) {
 		this.city = city;
+		this.routing = RoutingTable.of(city);
 		remainingCapacity = VehicleCapacity;
 		if (availableTasks != null) {
 			this.availableTasks = new Task[availableTasks.size()];
@@ -72,7 +73,7 @@ public class State implements Cloneable, Comparable<State> {
 					child.pickedUpTasks[pickedUpTasks.length] = availableTasks[i];
 					child.city = availableTasks[i].pickupCity;
 					child.remainingCapacity -= availableTasks[i].weight;
-					child.cost += this.city.distanceTo(child.city); // cost to go and pickup that package
+					child.cost += routing.distance(this.city, child.city); // cost to go and pickup that package
 					if (useHeuristic) {
 						child.computeHeuristic();
 					}
@@ -95,7 +96,7 @@ public class State implements Cloneable, Comparable<State> {
 				
 				child.city = pickedUpTasks[i].deliveryCity;
 				child.remainingCapacity += pickedUpTasks[i].weight;
-				child.cost += this.city.distanceTo(child.city); // cost to go and deliver that package
+				child.cost += routing.distance(this.city, child.city); // cost to go and deliver that package
 				if (useHeuristic) {
 					child.computeHeuristic();
 				}
@@ -126,9 +127,7 @@ public class State implements Cloneable, Comparable<State> {
 					if (i == availableTasks.length || availableTasks[i] != parent.availableTasks[i]) {
 						// if i == availableTasks.length, it means parent took its last available task
 						// if availableTasks[i] != parent.availableTasks[i], it means pakent took action number i
-						for (City city : parent.city.pathTo(parent.availableTasks[i].pickupCity)) {
-							plan.appendMove(city);
-						}
+						routing.appendMoves(plan, parent.city, parent.availableTasks[i].pickupCity);
 						plan.appendPickup(parent.availableTasks[i]);
 						break; // this should not trigger more than once
 					}
@@ -136,9 +135,7 @@ public class State implements Cloneable, Comparable<State> {
 			} else { // 2. we delivered one of the packages we had
 				for (int i = 0; i < parent.pickedUpTasks.length; i++) {
 					if (i == pickedUpTasks.length || pickedUpTasks[i] != parent.pickedUpTasks[i]) {
-						for (City city : parent.city.pathTo(parent.pickedUpTasks[i].deliveryCity)) {
-							plan.appendMove(city);	
-						}
+						routing.appendMoves(plan, parent.city, parent.pickedUpTasks[i].deliveryCity);
 						plan.appendDelivery(parent.pickedUpTasks[i]);
 						break;
 					}
@@ -198,34 +195,27 @@ public class State implements Cloneable, Comparable<State> {
 	 * 1.delivery = 2.pickup) into account 
 	 */
 	private void computeHeuristic() {
-		Map<City, Double> incomingCosts = new HashMap<City, Double>();  // cost of a path that will lead to that city
+		double[] incomingCosts = new double[routing.nbrIds()];  // cost of a path that will lead to that city (by id), -1 if none
+		Arrays.fill(incomingCosts, -1);
 		heuristic = 0;
-		Double taskCost, incomingCost;
+		double taskCost;
 		
 		for (Task task: availableTasks) {
-			taskCost = city.distanceTo(task.pickupCity) + task.pathLength();
+			taskCost = routing.distance(city, task.pickupCity) + routing.distance(task.pickupCity, task.deliveryCity);
 			heuristic = Math.max(heuristic, taskCost);
-			
-			incomingCost = incomingCosts.get(task.deliveryCity);
-			if (incomingCost == null || taskCost > incomingCost) {
-				incomingCosts.put(task.deliveryCity, taskCost);
-			}
+			incomingCosts[task.deliveryCity.id] = Math.max(incomingCosts[task.deliveryCity.id], taskCost);
 		}
 		for (Task task: pickedUpTasks) {
-			taskCost = city.distanceTo(task.deliveryCity);
+			taskCost = routing.distance(city, task.deliveryCity);
 			heuristic = Math.max(heuristic, taskCost);
-			
-			incomingCost = incomingCosts.get(task.deliveryCity);
-			if (incomingCost == null || taskCost > incomingCost) {
-				incomingCosts.put(task.deliveryCity, taskCost);
-			}
+			incomingCosts[task.deliveryCity.id] = Math.max(incomingCosts[task.deliveryCity.id], taskCost);
 		}
 		
 		// we inspect path of length 1
 		for (Task task: availableTasks) {
-			incomingCost = incomingCosts.get(task.pickupCity);
-			if (incomingCost != null) {
-				heuristic = Math.max(heuristic, incomingCost + task.pathLength());
+			double incomingCost = incomingCosts[task.pickupCity.id];
+			if (incomingCost >= 0) {
+				heuristic = Math.max(heuristic, incomingCost + routing.distance(task.pickupCity, task.deliveryCity));
 			}
 		}
 	}
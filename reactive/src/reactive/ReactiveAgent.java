@@ -2,6 +2,7 @@ package reactive;
 
 import java.util.Arrays;
 
+import common.RoutingTable;
 import logist.simulation.Vehicle;
 import logist.agent.Agent;
 import logist.behavior.ReactiveBehavior;
@@ -21,6 +22,7 @@ public class ReactiveAgent implements ReactiveBehavior {
 	private BiHashMap<String, Integer> stateMap;
 	private double[][][] QTable;
 	private double discount;
+	private RoutingTable routing; // distances and neighbours of the topology, by city id
 	
 	@Override
 	public void setup(Topology topology, TaskDistribution td, Agent agent) {
@@ -29,6 +31,7 @@ public class ReactiveAgent implements ReactiveBehavior {
 		// If the property is not present it defaults to 0.95
 		discount = agent.readProperty("discount-factor", Double.class, 0.95);
 		this.myAgent = agent;
+		this.routing = RoutingTable.of(topology);
 		numActions = 0;
 
 		
@@ -86,15 +89,16 @@ public class ReactiveAgent implements ReactiveBehavior {
 						City to = (topology.cities()).get(fromAndTo[1]);
 
 						if (vehicle.capacity() >= td.weight(from, to)) {
-							QTable[i][state][0] = td.reward(from, to) - from.distanceTo(to)*vehicle.costPerKm()
+							QTable[i][state][0] = td.reward(from, to) - routing.distance(from.id, to.id)*vehicle.costPerKm()
 									+ discount*getFutureReward(to, topology, td, stateValues); // Compute reward for delivering task
 							best = Math.max(best, QTable[i][state][0]); // best can be updated on each action
 						}
 					}
-					for(City neighbourg : from) {
-						QTable[i][state][neighbourg.id + 1] = -from.distanceTo(neighbourg)*vehicle.costPerKm()
-								+ discount*getFutureReward(neighbourg, topology, td, stateValues); // Compute reward for moving to other city
-						best = Math.max(best, QTable[i][state][neighbourg.id + 1]);
+					for (int k = routing.neighbourStart(from.id); k < routing.neighbourStart(from.id + 1); k++) {
+						int neighbourg = routing.neighbourId(k);
+						QTable[i][state][neighbourg + 1] = -routing.distance(from.id, neighbourg)*vehicle.costPerKm()
+								+ discount*getFutureReward(routing.city(neighbourg), topology, td, stateValues); // Compute reward for moving to other city
+						best = Math.max(best, QTable[i][state][neighbourg + 1]);
 					}
 					maxDiff = Math.max(maxDiff, Math.abs(stateValues[state] - best));
 					stateValues[state] = best;
@@ -135,15 +139,16 @@ public class ReactiveAgent implements ReactiveBehavior {
 						City to = (topology.cities()).get(fromAndTo[1]);
 
 						if (vehicle.capacity() >= td.weight(from, to)) {
-							QTable[i][state][0] = td.reward(from, to) - from.distanceTo(to)*vehicle.costPerKm()
+							QTable[i][state][0] = td.reward(from, to) - routing.distance(from.id, to.id)*vehicle.costPerKm()
 									+ discount*comingToCityValues[to.id]; // Compute reward for delivering task
 							best = Math.max(best, QTable[i][state][0]); // best can be updated on each action
 						}
 					}
-					for(City neighbourg : from) {
-						QTable[i][state][neighbourg.id + 1] = -from.distanceTo(neighbourg)*vehicle.costPerKm()
-								+ discount*comingToCityValues[neighbourg.id]; // Compute reward for moving to other city
-						best = Math.max(best, QTable[i][state][neighbourg.id + 1]);
+					for (int k = routing.neighbourStart(from.id); k < routing.neighbourStart(from.id + 1); k++) {
+						int neighbourg = routing.neighbourId(k);
+						QTable[i][state][neighbourg + 1] = -routing.distance(from.id, neighbourg)*vehicle.costPerKm()
+								+ discount*comingToCityValues[neighbourg]; // Compute reward for moving to other city
+						best = Math.max(best, QTable[i][state][neighbourg + 1]);
 					}
 					maxDiff = Math.max(maxDiff, Math.abs(stateValues[state] - best));
 					stateValues[state] = best;
@@ -191,15 +196,16 @@ public class ReactiveAgent implements ReactiveBehavior {
 							City to = (topology.cities()).get(fromAndTo[1]);
 
 							if (vehicle.capacity() >= td.weight(from, to)) {
-								QTable[i][state][0] = td.reward(from, to) - from.distanceTo(to)*vehicle.costPerKm()
+								QTable[i][state][0] = td.reward(from, to) - routing.distance(from.id, to.id)*vehicle.costPerKm()
 										+ discount*comingToCityValues[to.id]; // Compute reward for delivering task
 								best = Math.max(best, QTable[i][state][0]); // best can be updated on each action
 							}
 						}
-						for(City neighbourg : from) {
-							QTable[i][state][neighbourg.id + 1] = -from.distanceTo(neighbourg)*vehicle.costPerKm()
-									+ discount*comingToCityValues[neighbourg.id]; // Compute reward for moving to other city
-							best = Math.max(best, QTable[i][state][neighbourg.id + 1]);
+						for (int k = routing.neighbourStart(from.id); k < routing.neighbourStart(from.id + 1); k++) {
+							int neighbourg = routing.neighbourId(k);
+							QTable[i][state][neighbourg + 1] = -routing.distance(from.id, neighbourg)*vehicle.costPerKm()
+									+ discount*comingToCityValues[neighbourg]; // Compute reward for moving to other city
+							best = Math.max(best, QTable[i][state][neighbourg + 1]);
 						}
 						maxDiff = Math.max(maxDiff, Math.abs(stateValues[state] - best));
 						stateValues[state] = best;
@@ -1,7 +1,6 @@
 # first argument: tournament name
-# second argument: config file
-java -jar logist/logist.jar -new $1 agents
-java -jar logist/logist.jar -run $1 $2
-java -jar logist/logist.jar -score $1
-results='tournament/'$1'/results.txt'
-cat echo $results
+# second argument: config file (or directory of config files)
+# other arguments: options of tools.TournamentRunner, e.g. -cpus 2 to give 2 cores to every match
+# and -cds tournament/classes.jsa to share the classes of the platforms between the matches (Java 13 or later)
+# the matches are played in parallel and a tournament that was interrupted is resumed, build it first with mvn install
+java -cp tools/bin:logist/logist.jar tools.TournamentRunner "$@"
@@ -0,0 +1,64 @@
+package auction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * The ring buffers and the rolling win counts of BidHistory against a naive recomputation over a list of the last
+ * auctions, through many wraps of the buffers
+ */
+public class BidHistoryTest {
+
+	@Test
+	public void matchesANaiveRecomputation() {
+		Random random = new Random(0);
+		for (int nbrAgents = 2; nbrAgents <= 3; nbrAgents++) {
+			int capacity = 50, ourId = nbrAgents - 1;
+			BidHistory history = new BidHistory(ourId, capacity);
+			List<Long[]> bids = new ArrayList<Long[]>();
+			List<Integer> winners = new ArrayList<Integer>();
+			for (int auction = 0; auction < 5000; auction++) {
+				Long[] auctionBids = new Long[nbrAgents];
+				for (int agent = 0; agent < nbrAgents; agent++) {
+					auctionBids[agent] = (random.nextInt(10) == 0) ? null : (long) random.nextInt(5000);
+				}
+				int winner = random.nextInt(nbrAgents);
+				history.add(auctionBids, winner);
+				bids.add(auctionBids);
+				winners.add(winner);
+
+				int size = Math.min(capacity, bids.size());
+				assertEquals(size, history.size());
+				assertEquals(auction + 1, history.nbrAuctions());
+				int[] wins = new int[nbrAgents];
+				for (int age = 0; age < size; age++) {
+					int index = bids.size() - 1 - age;
+					assertEquals((int) winners.get(index), history.winner(age));
+					for (int agent = 0; agent < nbrAgents; agent++) {
+						Long bid = bids.get(index)[agent];
+						assertEquals((bid == null) ? BidHistory.NO_BID : bid, history.bid(agent, age));
+					}
+					wins[winners.get(index)]++;
+				}
+				for (int agent = 0; agent < nbrAgents; agent++) {
+					assertEquals((double) wins[agent] / size, history.winRate(agent), 1e-12);
+				}
+				assertEquals((double) wins[ourId] / size, history.ourWinRate(), 1e-12);
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void forgottenAuctionsCantBeRead() {
+		BidHistory history = new BidHistory(0, 3);
+		for (int auction = 0; auction < 5; auction++) {
+			history.add(new Long[] { 1L, 2L }, 0);
+		}
+		history.bid(0, 3);
+	}
+}
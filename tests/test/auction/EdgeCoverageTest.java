@@ -0,0 +1,52 @@
+package auction;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import common.Problems;
+import common.RoutingTable;
+import logist.task.Task;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * The covered length of EdgeCoverage, computed on bitmaps, against a set of the directed links of the shortest paths
+ * of the covered tasks
+ */
+public class EdgeCoverageTest {
+
+	@Test
+	public void coveredLengthMatchesTheLinksOfTheCoveredPaths() {
+		Random random = new Random(0);
+		for (String name: new String[] { "england", "france", "switzerland", "the_netherlands" }) {
+			Topology topology = Problems.topology(name);
+			RoutingTable routing = RoutingTable.of(topology);
+			List<City> cities = topology.cities();
+			EdgeCoverage coverage = new EdgeCoverage(topology);
+			Set<String> covered = new HashSet<String>();
+			for (int i = 0; i < 200; i++) {
+				Task task = new Task(i, cities.get(random.nextInt(cities.size())), cities.get(random.nextInt(cities.size())), 0, 1);
+				double length = 0;
+				for (City city = task.pickupCity; city != task.deliveryCity; city = routing.nextHop(city, task.deliveryCity)) {
+					City next = routing.nextHop(city, task.deliveryCity);
+					if (covered.contains(city.id + "-" + next.id)) {
+						length += routing.distance(city, next);
+					}
+				}
+				assertEquals(length, coverage.coveredLength(task), 1e-6);
+				if (random.nextInt(3) == 0) {
+					coverage.cover(task);
+					for (City city = task.pickupCity; city != task.deliveryCity; city = routing.nextHop(city, task.deliveryCity)) {
+						covered.add(city.id + "-" + routing.nextHop(city, task.deliveryCity).id);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * The exact solver against an enumeration of every solution of tiny problems, and against the stochastic searches on
+ * problems a little larger
+ */
+public class ExactSolverTest {
+	private static final double EPSILON = 1e-6;
+	private static final long TIME = 60000; // in ms, the solver must finish well before that
+
+	@Test
+	public void findsTheOptimumOfTinyProblems() {
+		Random random = new Random(0);
+		for (int instance = 0; instance < 40; instance++) {
+			ProblemInstance problem = Problems.random(random, 1 + random.nextInt(4), 1 + random.nextInt(2), 6,
+					6 + random.nextInt(8));
+			Solution optimum = new ExactSolver(problem).solve(null, System.currentTimeMillis() + TIME);
+			assertNotNull(optimum);
+			Problems.check(optimum);
+			assertEquals(bruteForce(problem), optimum.getCost(), EPSILON);
+		}
+	}
+
+	@Test
+	public void isNeverWorseThanTheSearches() {
+		Random random = new Random(1);
+		for (int instance = 0; instance < 10; instance++) {
+			ProblemInstance problem = Problems.random(random, 5 + random.nextInt(4), 2, 6, 15);
+			Solution optimum = new ExactSolver(problem).solve(null, System.currentTimeMillis() + TIME);
+			assertNotNull(optimum);
+			Problems.check(optimum);
+			for (Solution.Init init: Solution.Init.values()) {
+				Solution solution = new Solution(problem, init);
+				for (int step = 0; step < 500 && solution.hasNeighbours(); step++) {  // steepest descent
+					Solution best = null;
+					for (Solution neighbour: solution.generateNeighbours()) {
+						if (best == null || neighbour.getCost() < best.getCost()) {
+							best = neighbour;
+						}
+					}
+					if (best != null) {
+						solution = best;
+					}
+					assertTrue(optimum.getCost() <= solution.getCost() + EPSILON);
+				}
+				assertTrue(optimum.getCost() <= solution.polishRoutes().getCost() + EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void returnsTheUpperBoundWhenItIsOptimal() {
+		ProblemInstance problem = Problems.random(new Random(2), 5, 2, 6, 15);
+		Solution optimum = new ExactSolver(problem).solve(null, System.currentTimeMillis() + TIME);
+		assertSame(optimum, new ExactSolver(problem).solve(optimum, System.currentTimeMillis() + TIME));
+	}
+
+	/*
+	 * cost of the cheapest solution: every vehicle in turn executes any sequence of the remaining Tasks it can and may
+	 * end its route once it carries nothing, without any cut. A task picked up but not delivered is always carried by
+	 * the current vehicle since the previous ones ended empty
+	 */
+	private static double bruteForce(ProblemInstance problem) {
+		return bruteForce(problem, 0, problem.nbrTasks, 0, new boolean[problem.nbrTasks]);
+	}
+
+	private static double bruteForce(ProblemInstance problem, int v, int pos, int load, boolean[] done) {
+		boolean allDone = true;
+		for (boolean taskDone: done) {
+			allDone &= taskDone;
+		}
+		if (allDone) {
+			return 0;
+		}
+		double best = Double.POSITIVE_INFINITY;
+		for (int task = 0; task < done.length; task++) {
+			boolean possible = !done[task] && ((task % 2 == 0)
+					? load + problem.weight[task] <= problem.vehicleCapacity[v] : done[task - 1]);
+			if (possible) {
+				done[task] = true;
+				best = Math.min(best, problem.vehicleCostPerKm[v] * problem.distance[pos][task]
+						+ bruteForce(problem, v, task, load + problem.weight[task], done));
+				done[task] = false;
+			}
+		}
+		if (load == 0 && v + 1 < problem.nbrVehicles) {  // v ends its route
+			best = Math.min(best, bruteForce(problem, v + 1, problem.nbrTasks + v + 1, 0, done));
+		}
+		return best;
+	}
+}
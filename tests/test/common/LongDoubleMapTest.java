@@ -0,0 +1,42 @@
+package common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+// the map of the exact solver against a HashMap, through its growths and clears
+public class LongDoubleMapTest {
+
+	@Test
+	public void behavesLikeAHashMap() {
+		Random random = new Random(0);
+		LongDoubleMap map = new LongDoubleMap(2);
+		Map<Long, Double> reference = new HashMap<Long, Double>();
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 100000; i++) {
+				long key = (random.nextBoolean()) ? random.nextInt(1000) : random.nextLong() & Long.MAX_VALUE;
+				double value = random.nextDouble();
+				map.put(key, value);
+				reference.put(key, value);
+			}
+			assertEquals(reference.size(), map.size());
+			for (Map.Entry<Long, Double> entry: reference.entrySet()) {
+				assertEquals(entry.getValue(), map.get(entry.getKey()), 0);
+			}
+			for (int i = 0; i < 1000; i++) {
+				long key = random.nextLong() & Long.MAX_VALUE;
+				if (!reference.containsKey(key)) {
+					assertTrue(Double.isNaN(map.get(key)));
+				}
+			}
+			map.clear();
+			reference.clear();
+			assertTrue(Double.isNaN(map.get(0)));
+		}
+	}
+}
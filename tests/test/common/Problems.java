@@ -0,0 +1,152 @@
+package common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import logist.config.Parsers;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * Random problems on the bundled topologies and the checks every solution of a problem must pass, computed from its
+ * nextTask array only so they don't rely on the caches of Solution
+ */
+public final class Problems {
+	private static final double EPSILON = 1e-6;
+	private static final Map<String, Topology> topologies = new HashMap<String, Topology>();
+
+	private Problems() {}
+
+	// the bundled topology of the given name, parsed once
+	public static synchronized Topology topology(String name) {
+		Topology topology = topologies.get(name);
+		if (topology == null) {
+			String directory = System.getProperty("topology.dir", ".." + File.separator + "config" + File.separator + "topology");
+			try {
+				topology = Parsers.parseTopology(directory + File.separator + name + ".xml");
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Cannot read the topology " + name + " from " + directory, e);
+			}
+			topologies.put(name, topology);
+		}
+		return topology;
+	}
+
+	/*
+	 * problem of nbrTasks tasks of weight 1 to maxWeight between random distinct cities of england, done by
+	 * nbrVehicles vehicles of the given capacity with random home cities and costs per km
+	 */
+	public static ProblemInstance random(Random random, int nbrTasks, int nbrVehicles, int maxWeight, int capacity) {
+		List<City> cities = topology("england").cities();
+		List<Integer> weights = new ArrayList<Integer>();
+		List<City> pickups = new ArrayList<City>(), deliveries = new ArrayList<City>();
+		for (int i = 0; i < nbrTasks; i++) {
+			City pickup = cities.get(random.nextInt(cities.size())), delivery;
+			do {
+				delivery = cities.get(random.nextInt(cities.size()));
+			} while (delivery == pickup);
+			weights.add(1 + random.nextInt(maxWeight));
+			pickups.add(pickup);
+			deliveries.add(delivery);
+		}
+		City[] homes = new City[nbrVehicles];
+		int[] capacities = new int[nbrVehicles], costsPerKm = new int[nbrVehicles];
+		for (int v = 0; v < nbrVehicles; v++) {
+			homes[v] = cities.get(random.nextInt(cities.size()));
+			capacities[v] = capacity;
+			costsPerKm[v] = 1 + random.nextInt(5);
+		}
+		return new ProblemInstance(weights, pickups, deliveries, homes, capacities, costsPerKm);
+	}
+
+	// the Tasks of vehicle v in the order it executes them, read from nextTask
+	public static int[] route(Solution solution, int v) {
+		ProblemInstance problem = solution.getProblem();
+		List<Integer> route = new ArrayList<Integer>();
+		for (int task = solution.nextTask[problem.nbrTasks + v]; task != -1; task = solution.nextTask[task]) {
+			assertTrue("vehicle " + v + " loops", route.size() < problem.nbrTasks);
+			route.add(task);
+		}
+		int[] array = new int[route.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = route.get(i);
+		}
+		return array;
+	}
+
+	// the vehicle executing every Task
+	public static int[] vehicles(Solution solution) {
+		int[] vehicleOf = new int[solution.getProblem().nbrTasks];
+		for (int v = 0; v < solution.getProblem().nbrVehicles; v++) {
+			for (int task: route(solution, v)) {
+				vehicleOf[task] = v;
+			}
+		}
+		return vehicleOf;
+	}
+
+	// cost of the route of vehicle v
+	public static double cost(ProblemInstance problem, int v, int[] route) {
+		double distance = 0;
+		int previous = problem.nbrTasks + v;
+		for (int task: route) {
+			distance += problem.distance[previous][task];
+			previous = task;
+		}
+		return problem.vehicleCostPerKm[v] * distance;
+	}
+
+	/*
+	 * checks that the route of vehicle v picks up every task before delivering it and never carries more than its
+	 * capacity
+	 */
+	public static void checkRoute(ProblemInstance problem, int v, int[] route) {
+		boolean[] picked = new boolean[problem.nbrTasks / 2], delivered = new boolean[problem.nbrTasks / 2];
+		int load = 0;
+		for (int task: route) {
+			if (task % 2 == 0) {
+				assertTrue("task " + task / 2 + " picked up twice", !picked[task / 2]);
+				picked[task / 2] = true;
+			} else {
+				assertTrue("task " + task / 2 + " delivered before its pickup", picked[task / 2] && !delivered[task / 2]);
+				delivered[task / 2] = true;
+			}
+			load += problem.weight[task];
+			assertTrue("vehicle " + v + " carries " + load, load <= problem.vehicleCapacity[v]);
+		}
+		for (int t = 0; t < picked.length; t++) {
+			assertEquals("task " + t + " picked up but not delivered", picked[t], delivered[t]);
+		}
+	}
+
+	/*
+	 * checks that every task is done by exactly one vehicle with a valid route and that the cost of the solution is
+	 * the one of its routes
+	 */
+	public static void check(Solution solution) {
+		ProblemInstance problem = solution.getProblem();
+		boolean[] done = new boolean[problem.nbrTasks];
+		double cost = 0;
+		for (int v = 0; v < problem.nbrVehicles; v++) {
+			int[] route = route(solution, v);
+			checkRoute(problem, v, route);
+			assertEquals(route.length, solution.getRouteLength(v));
+			for (int task: route) {
+				assertTrue("Task " + task + " done twice", !done[task]);
+				done[task] = true;
+			}
+			cost += cost(problem, v, route);
+		}
+		for (int task = 0; task < done.length; task++) {
+			assertTrue("Task " + task + " not done", done[task]);
+		}
+		assertEquals(cost, solution.getCost(), EPSILON * Math.max(1, cost));
+	}
+}
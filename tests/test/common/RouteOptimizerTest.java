@@ -0,0 +1,43 @@
+package common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * The moves of RouteOptimizer are checked for precedence and capacity from the positions of the Tasks and the load
+ * profile before they are applied: on random routes, often with a capacity close to the weight of the tasks, the
+ * optimized route must still be valid, hold the same Tasks and not be longer.
+ */
+public class RouteOptimizerTest {
+
+	@Test
+	public void optimizedRoutesAreValidAndNotLonger() {
+		Random random = new Random(0);
+		for (int instance = 0; instance < 300; instance++) {
+			int maxWeight = 1 + random.nextInt(10);
+			ProblemInstance problem = Problems.random(random, 2 + random.nextInt(30), 1, maxWeight,
+					maxWeight + random.nextInt(3 * maxWeight));
+			int[] route = Problems.route(new Solution(problem, Solution.Init.RANDOM), 0);
+			int[] given = route.clone();
+
+			RouteOptimizer optimizer = new RouteOptimizer(problem, 0, route);
+			optimizer.optimize();
+			int[] optimized = optimizer.getRoute();
+			assertArrayEquals("the given route was changed", given, route);
+			Problems.checkRoute(problem, 0, optimized);
+			int[] sortedRoute = route.clone(), sortedOptimized = optimized.clone();
+			Arrays.sort(sortedRoute);
+			Arrays.sort(sortedOptimized);
+			assertArrayEquals(sortedRoute, sortedOptimized);
+			assertTrue(Problems.cost(problem, 0, optimized) <= Problems.cost(problem, 0, route) + 1e-6);
+
+			assertFalse("the optimized route isn't a local optimum", new RouteOptimizer(problem, 0, optimized).optimize());
+		}
+	}
+}
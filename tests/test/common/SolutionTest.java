@@ -0,0 +1,83 @@
+package common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * The neighbours share the route caches of the solution they come from until they change a route (copy on write) and
+ * get their cost incrementally: every neighbour must be a valid solution costing what its routes cost, and generating
+ * the neighbours of a solution must leave it unchanged.
+ */
+public class SolutionTest {
+	private static final int STEPS = 100;
+
+	@Test
+	public void neighboursAreValidAndLeaveTheirSolutionUnchanged() {
+		Random random = new Random(0);
+		for (int instance = 0; instance < 30; instance++) {
+			ProblemInstance problem = Problems.random(random, 3 + random.nextInt(25), 1 + random.nextInt(4), 6,
+					6 + random.nextInt(20));
+			Solution solution = new Solution(problem, Solution.Init.values()[instance % Solution.Init.values().length]);
+			Problems.check(solution);
+			for (int step = 0; step < STEPS && solution.hasNeighbours(); step++) {
+				int[] nextTask = solution.nextTask.clone();
+				double cost = solution.getCost();
+				ArrayList<Solution> neighbours = solution.generateNeighbours();
+				for (Solution neighbour: neighbours) {
+					Problems.check(neighbour);
+				}
+				assertArrayEquals(nextTask, solution.nextTask);
+				assertEquals(cost, solution.getCost(), 0);
+				Problems.check(solution);  // its caches weren't changed through a neighbour either
+				if (!neighbours.isEmpty()) {
+					solution = neighbours.get(random.nextInt(neighbours.size()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void polishedRoutesKeepTheirTasksAndNeverCostMore() {
+		Random random = new Random(1);
+		for (int instance = 0; instance < 50; instance++) {
+			ProblemInstance problem = Problems.random(random, 5 + random.nextInt(25), 1 + random.nextInt(3), 6,
+					6 + random.nextInt(20));
+			Solution solution = new Solution(problem, Solution.Init.RANDOM);
+			int[] nextTask = solution.nextTask.clone();
+			Solution polished = solution.polishRoutes();
+			Problems.check(polished);
+			assertTrue(polished.getCost() <= solution.getCost() + 1e-6);
+			assertArrayEquals(Problems.vehicles(solution), Problems.vehicles(polished));
+			assertArrayEquals(nextTask, solution.nextTask);
+			Problems.check(solution);
+		}
+	}
+
+	@Test
+	public void carriedOverSolutionsKeepTheirRoutesAndInsertTheNewTasks() {
+		Random random = new Random(2);
+		for (int instance = 0; instance < 30; instance++) {
+			int nbrTasks = 3 + random.nextInt(20);
+			ProblemInstance problem = Problems.random(random, nbrTasks, 1 + random.nextInt(4), 6, 30);
+			Solution solution = new Solution(problem, Solution.Init.CHEAPESTINSERTION);
+			int[] sameIndex = new int[nbrTasks];
+			for (int t = 0; t < nbrTasks; t++) {
+				sameIndex[t] = t;
+			}
+			Solution copy = new Solution(problem, solution, sameIndex);
+			Problems.check(copy);
+			assertArrayEquals(solution.nextTask, copy.nextTask);
+
+			int[] withoutLast = sameIndex.clone();  // the last task is left out of the previous solution
+			withoutLast[nbrTasks - 1] = -1;
+			Solution partial = new Solution(problem, solution, withoutLast);
+			Problems.check(partial);
+		}
+	}
+}
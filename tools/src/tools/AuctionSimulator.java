@@ -0,0 +1,343 @@
+package tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import logist.LogistSettings.TimeoutKey;
+import logist.behavior.AuctionBehavior;
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.DefaultTaskDistribution;
+import logist.task.Task;
+import logist.task.TaskSet;
+import tools.Configuration.Entry;
+
+/*
+ * Plays auction games between two agents in this JVM, without the platform, so that thousands of games can be played
+ * in the time logist plays a few. A game is played like the platform plays it:
+ * - the tasks are drawn from the distribution of the configuration, built from the seed of the game instead of the
+ *   rngSeed of the configuration, every agent gets the vehicles of one company
+ * - setup, askPrice (with the result of the previous auction) and plan are called with the timeouts of the settings,
+ *   the lowest bid wins the task (the first agent on a draw) and the winner is paid its bid
+ * - the plans are checked with the PlanVerifier of logist and the profit of an agent is what it was paid minus the
+ *   cost of its plans
+ * An agent that times out, crashes or returns a wrong plan loses the game. Every seed is played twice, with the agents
+ * on both sides, the agents are told the settings file through their property "settings" so they use the same
+ * timeouts as the simulator.
+ * The games are played in parallel on -parallel threads (1 by default): the agents use several threads and measure
+ * their time, so more games than cores at a time make them play worse than in a tournament.
+ *
+ * usage: AuctionSimulator agent1 agent2 [-config file] [-agents file] [-settings file] [-games n] [-parallel n]
+ *        [-seed s] [-o directory] [-verbose]
+ * run from the directory the paths of the configuration are relative to, like the platform (see the execution
+ * simulate of tools/pom.xml). The results are written in the output directory (simulation by default): games.csv (one
+ * line per game) and summary.json.
+ */
+public class AuctionSimulator {
+	private final Configuration configuration;
+
+	AuctionSimulator(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/*
+	 * plays nbrGames games between agent1 and agent2 on parallel threads, game i is played on the tasks of the seed
+	 * seed + i / 2, agent1 being the first agent when i is even. Returns the games in that order
+	 */
+	List<Game> play(Entry agent1, Entry agent2, int nbrGames, long seed, int parallel) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(parallel);
+		List<Future<Game>> results = new ArrayList<Future<Game>>(nbrGames);
+		for (int i = 0; i < nbrGames; i++) {
+			final Game game = new Game(seed + i / 2, (i % 2 == 0) ? agent1 : agent2, (i % 2 == 0) ? agent2 : agent1);
+			results.add(executor.submit(new Callable<Game>() {
+				@Override
+				public Game call() {
+					game.play();
+					return game;
+				}
+			}));
+		}
+		executor.shutdown();
+		List<Game> games = new ArrayList<Game>(nbrGames);
+		for (Future<Game> result: results) {
+			try {
+				games.add(result.get());
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return games;
+	}
+
+	/*
+	 * a game on the tasks drawn from a seed, agents[0] bids first and has the vehicles of the first company
+	 */
+	class Game {
+		final long seed;
+		final Entry[] agents;
+		final long[] profit = new long[2];
+		final int[] nbrTasks = new int[2];
+		int failed = -1; // the agent that timed out, crashed or returned a wrong plan, -1 if none did
+		String failure;
+		long duration; // in ms
+
+		Game(long seed, Entry agent1, Entry agent2) {
+			this.seed = seed;
+			this.agents = new Entry[] { agent1, agent2 };
+		}
+
+		// the index of the agent that won the game, -1 on a draw
+		int winner() {
+			if (failed >= 0) {
+				return 1 - failed;
+			}
+			return (profit[0] == profit[1]) ? -1 : (profit[0] > profit[1]) ? 0 : 1;
+		}
+
+		// the index of entry in this game
+		int indexOf(Entry entry) {
+			return (agents[0] == entry) ? 0 : 1;
+		}
+
+		void play() {
+			long start = System.currentTimeMillis();
+			Random random = new Random(seed);
+			DefaultTaskDistribution distribution = configuration.distribution(random);
+			Task[] taskArray = new Task[configuration.nbrTasks];
+			TaskSet tasks = distribution.createTaskSet(taskArray);
+
+			Player[] players = new Player[2];
+			for (int i = 0; i < 2; i++) {
+				players[i] = new Player(i, agents[i], configuration.vehicles(i, tasks), TaskSet.noneOf(tasks));
+			}
+			int current = 0;
+			try {
+				for (current = 0; current < 2; current++) {
+					players[current].setup(distribution);
+				}
+
+				for (Task task: tasks) {
+					int min = -1;
+					Long[] bids = new Long[2];
+					for (current = 0; current < 2; current++) {
+						bids[current] = players[current].askPrice(task);
+						if (bids[current] != null && (min == -1 || bids[current] < bids[min])) {
+							min = current;
+						}
+					}
+					if (min >= 0) {
+						task = new Task(task.id, task.pickupCity, task.deliveryCity, bids[min].longValue(), task.weight);
+						taskArray[task.id] = task;
+					}
+					for (Player player: players) {
+						player.notifyResult(task, min, bids);
+					}
+				}
+
+				for (current = 0; current < 2; current++) {
+					profit[current] = players[current].plan();
+					nbrTasks[current] = players[current].tasks.size();
+				}
+			} catch (Exception e) {
+				failed = current;
+				failure = e.getMessage();
+			} finally {
+				for (Player player: players) {
+					player.close(player.behavior);
+				}
+			}
+			duration = System.currentTimeMillis() - start;
+		}
+	}
+
+	/*
+	 * an auction agent in a game
+	 */
+	private class Player extends SimulatedAgent {
+		private AuctionBehavior behavior;
+		private Task lastTask; // the result of the last auction, given to the behavior at the next call like the platform does
+		private int lastWinner;
+		private Long[] lastBids;
+
+		Player(int id, Entry entry, List<Vehicle> vehicles, TaskSet tasks) {
+			super(id, entry, configuration, vehicles, tasks);
+		}
+
+		void setup(final DefaultTaskDistribution distribution) throws Exception {
+			call("setup", TimeoutKey.SETUP, new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					behavior = newBehavior(AuctionBehavior.class);
+					behavior.setup(configuration.topology, distribution, Player.this);
+					return null;
+				}
+			});
+		}
+
+		Long askPrice(final Task task) throws Exception {
+			return call("askPrice", TimeoutKey.BID, new Callable<Long>() {
+				@Override
+				public Long call() {
+					giveResult();
+					return behavior.askPrice(task);
+				}
+			});
+		}
+
+		void notifyResult(Task previous, int winner, Long[] bids) {
+			if (winner == id()) {
+				tasks.add(previous);
+			}
+			lastTask = previous;
+			lastWinner = winner;
+			lastBids = bids;
+		}
+
+		// return the profit of the plans of the agent, once they are checked
+		long plan() throws Exception {
+			List<Plan> plans = call("plan", TimeoutKey.PLAN, new Callable<List<Plan>>() {
+				@Override
+				public List<Plan> call() {
+					giveResult();
+					List<Plan> plans = new ArrayList<Plan>(behavior.plan(vehicles, tasks));
+					for (Plan plan: plans) {
+						plan.seal();
+					}
+					return plans;
+				}
+			});
+			long cost = cost(plans);
+			long reward = 0;
+			for (Task task: tasks) {
+				reward += task.reward;
+			}
+			return reward - cost;
+		}
+
+		private void giveResult() {
+			if (lastTask != null) {
+				behavior.auctionResult(lastTask, lastWinner, (lastBids == null) ? null : lastBids.clone());
+				lastTask = null;
+			}
+		}
+	}
+
+	// writes games.csv and summary.json in directory, return the summary, readable
+	static String writeResults(File directory, Entry agent1, Entry agent2, List<Game> games) throws IOException {
+		directory.mkdirs();
+		PrintWriter csv = new PrintWriter(new FileWriter(new File(directory, "games.csv")));
+		csv.println("seed,first,second,profit1,profit2,tasks1,tasks2,winner,failure,duration");
+		Entry[] agents = { agent1, agent2 };
+		int[] wins = new int[2], failures = new int[2];
+		long[] profit = new long[2];
+		int draws = 0;
+		for (Game game: games) {
+			int winner = game.winner();
+			csv.println(game.seed + "," + game.agents[0].name + "," + game.agents[1].name + "," + game.profit[0] + ","
+					+ game.profit[1] + "," + game.nbrTasks[0] + "," + game.nbrTasks[1] + ","
+					+ ((winner < 0) ? "" : game.agents[winner].name) + ","
+					+ ((game.failure == null) ? "" : "\"" + game.failure.replace("\"", "'") + "\"") + "," + game.duration);
+			for (int a = 0; a < 2; a++) {
+				int i = game.indexOf(agents[a]);
+				profit[a] += game.profit[i];
+				if (winner == i) {
+					wins[a]++;
+				}
+				if (game.failed == i) {
+					failures[a]++;
+				}
+			}
+			if (winner < 0) {
+				draws++;
+			}
+		}
+		csv.close();
+
+		StringBuilder json = new StringBuilder("{\n  \"games\": " + games.size() + ",\n  \"draws\": " + draws
+				+ ",\n  \"agents\": [\n");
+		StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%-30s %5s %8s %12s%n", "agent", "wins",
+				"failures", "mean profit"));
+		for (int a = 0; a < 2; a++) {
+			double meanProfit = games.isEmpty() ? 0 : (double) profit[a] / games.size();
+			json.append(String.format(Locale.ROOT, "    {\"agent\": \"%s\", \"wins\": %d, \"failures\": %d, "
+					+ "\"meanProfit\": %.1f}%s%n", agents[a].name.replace("\\", "\\\\").replace("\"", "\\\""), wins[a],
+					failures[a], meanProfit, (a == 0) ? "," : ""));
+			text.append(String.format(Locale.ROOT, "%-30s %5d %8d %12.1f%n", agents[a].name, wins[a], failures[a],
+					meanProfit));
+		}
+		json.append("  ]\n}\n");
+		Files.write(new File(directory, "summary.json").toPath(), json.toString().getBytes(Charset.forName("UTF-8")));
+		return text.toString();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: AuctionSimulator agent1 agent2 [-config file] [-agents file] [-settings file] "
+					+ "[-games n] [-parallel n] [-seed s] [-o directory] [-verbose]");
+			System.exit(1);
+		}
+		File config = new File("config" + File.separator + "auction.xml"), agentsFile = null, output = new File("simulation");
+		String settingsPath = null;
+		int nbrGames = 100, parallel = 1;
+		long seed = 1;
+		boolean verbose = false;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("-verbose")) {
+				verbose = true;
+			} else if (i + 1 == args.length) {
+				throw new IllegalArgumentException("Missing value of " + args[i]);
+			} else if (args[i].equals("-config")) {
+				config = new File(args[++i]);
+			} else if (args[i].equals("-agents")) {
+				agentsFile = new File(args[++i]);
+			} else if (args[i].equals("-settings")) {
+				settingsPath = args[++i];
+			} else if (args[i].equals("-games")) {
+				nbrGames = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-parallel")) {
+				parallel = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-seed")) {
+				seed = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-o")) {
+				output = new File(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		Configuration configuration = new Configuration(config, agentsFile, settingsPath);
+		AuctionSimulator simulator = new AuctionSimulator(configuration);
+		Entry agent1 = configuration.entry(args[0]), agent2 = configuration.entry(args[1]);
+		long start = System.currentTimeMillis();
+		PrintStream out = verbose ? System.out : Output.silence();
+		List<Game> games = simulator.play(agent1, agent2, nbrGames, seed, parallel);
+		System.setOut(out);
+		for (Game game: games) {
+			if (game.failure != null) {
+				System.out.println("seed " + game.seed + ": " + game.failure);
+			}
+		}
+		System.out.print(writeResults(output, agent1, agent2, games));
+		System.out.println(String.format(Locale.ROOT, "%d games in %.1f s, results in %s", games.size(),
+				(System.currentTimeMillis() - start) / 1000., output));
+		System.exit(0);  // the threads of an agent that timed out may still be running
+	}
+}
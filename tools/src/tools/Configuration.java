@@ -0,0 +1,269 @@
+package tools;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import logist.LogistSettings;
+import logist.config.Parsers;
+import logist.config.XMLTag;
+import logist.simulation.Vehicle;
+import logist.task.DefaultTaskDistribution;
+import logist.task.Policy;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/*
+ * A logist configuration read for the games played in this JVM (see AuctionSimulator and ParameterTuner): its
+ * topology, settings, task distribution, companies and agents. The paths it imports are relative to the working
+ * directory, like for the platform.
+ */
+class Configuration {
+	final Topology topology;
+	final String settingsPath;
+	final LogistSettings settings;
+	final int nbrTasks;
+	private final Element tasksTag; // the tasks of the configuration, the distribution of every game is drawn from it
+	private final List<List<VehicleSpec>> companies = new ArrayList<List<VehicleSpec>>();
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/*
+	 * settingsPath may be null to use the settings the configuration imports, agentsFile may be null to use the agents
+	 * it imports
+	 */
+	Configuration(File config, File agentsFile, String settingsPath) throws Exception {
+		Element root = parse(config);
+		topology = Parsers.parseTopology(child(root, "topology").getAttribute("import"));
+		if (settingsPath == null) {
+			Element settingsTag = child(root, "settings");
+			settingsPath = (settingsTag == null) ? null : settingsTag.getAttribute("import");
+		}
+		if (settingsPath == null) {
+			throw new IllegalArgumentException("No settings in " + config + ", give them with -settings");
+		}
+		this.settingsPath = settingsPath;
+		settings = Parsers.parseSettings(settingsPath);
+		tasksTag = child(root, "tasks");
+		nbrTasks = Integer.parseInt(tasksTag.getAttribute("number"));
+
+		for (Element company: children(child(root, "companies"), "company")) {
+			List<VehicleSpec> vehicles = new ArrayList<VehicleSpec>();
+			for (Element vehicle: children(company, "vehicle")) {
+				Map<String, String> sets = sets(vehicle);
+				vehicles.add(new VehicleSpec(vehicles.size(), vehicle.getAttribute("name"), topology.parseCity(sets.get("home")),
+						Integer.parseInt(sets.get("capacity")), Integer.parseInt(sets.get("cost-per-km")),
+						sets.containsKey("speed") ? Double.parseDouble(sets.get("speed")) : 90,
+						sets.containsKey("color") ? Color.decode(sets.get("color")) : Color.BLUE));
+			}
+			companies.add(vehicles);
+		}
+
+		if (agentsFile == null) {
+			Element agentsTag = child(root, "agents");
+			if (agentsTag == null) {
+				throw new IllegalArgumentException("No agents in " + config + ", give them with -agents");
+			}
+			agentsFile = new File(agentsTag.getAttribute("import"));
+		}
+		for (Element agent: children(parse(agentsFile), "agent")) {
+			String name = agent.getAttribute("name");
+			entries.put(name, new Entry(name, sets(agent)));
+		}
+	}
+
+	// the agent of the agents file with that name
+	Entry entry(String name) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new IllegalArgumentException("No agent " + name + " in the agents file");
+		}
+		return entry;
+	}
+
+	// the vehicles of a company for a game on the tasks of universe
+	List<Vehicle> vehicles(int company, TaskSet universe) {
+		if (company >= companies.size()) {
+			throw new IllegalArgumentException("The configuration has only " + companies.size() + " companies");
+		}
+		List<Vehicle> vehicles = new ArrayList<Vehicle>();
+		for (VehicleSpec spec: companies.get(company)) {
+			vehicles.add(new SimulatedVehicle(spec, universe));
+		}
+		return vehicles;
+	}
+
+	/*
+	 * the distribution of the tasks of the configuration drawn with random, like the platform draws it from the
+	 * rngSeed of the configuration. Synchronized as the DOM isn't safe to read from several threads
+	 */
+	synchronized DefaultTaskDistribution distribution(Random random) {
+		double[][] p = policy(child(tasksTag, "probability"), random);
+		double[][] r = policy(child(tasksTag, "reward"), random);
+		double[][] w = policy(child(tasksTag, "weight"), random);
+		double[] n;
+		Element noTask = child(tasksTag, "no-task");
+		if (noTask != null) {
+			double[] range = range(noTask);
+			if (noTask.getAttribute("distribution").equals("uniform")) {
+				n = Policy.uniform(topology.size(), range[0], range[1], random);
+			} else {
+				n = Policy.constant(topology.size(), (range[0] + range[1]) / 2.);
+			}
+		} else {
+			n = new double[topology.size()];
+		}
+		return new DefaultTaskDistribution(topology, random, p, r, w, n);
+	}
+
+	private double[][] policy(Element tag, Random random) {
+		String name = tag.getAttribute("policy");
+		Policy policy;
+		if (name.equals("long-distances")) {
+			policy = new Policy.LongDistances(topology);
+		} else if (name.equals("medium-distances")) {
+			policy = new Policy.MediumDistances(topology);
+		} else if (name.equals("short-distances")) {
+			policy = new Policy.ShortDistances(topology);
+		} else {
+			policy = new Policy.Uniform(topology);
+		}
+		double[] range = range(tag);
+		if (tag.getAttribute("distribution").equals("uniform")) {
+			return policy.uniform(range[0], range[1], random);
+		}
+		return policy.constant(range[0], range[1]);
+	}
+
+	// min and max of a distribution, both equal to its value when it has one
+	private static double[] range(Element tag) {
+		if (tag.hasAttribute("value")) {
+			double value = Double.parseDouble(tag.getAttribute("value"));
+			return new double[] { value, value };
+		}
+		return new double[] { Double.parseDouble(tag.getAttribute("min")), Double.parseDouble(tag.getAttribute("max")) };
+	}
+
+	static Element parse(File file) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file).getDocumentElement();
+	}
+
+	// the first child of parent with that name, null if it has none
+	static Element child(Element parent, String name) {
+		List<Element> children = children(parent, name);
+		return children.isEmpty() ? null : children.get(0);
+	}
+
+	static List<Element> children(Element parent, String name) {
+		List<Element> children = new ArrayList<Element>();
+		NodeList nodes = parent.getChildNodes();
+		for (int i = 0; i < nodes.getLength(); i++) {
+			if (nodes.item(i) instanceof Element && ((Element) nodes.item(i)).getTagName().equals(name)) {
+				children.add((Element) nodes.item(i));
+			}
+		}
+		return children;
+	}
+
+	// the attributes of the set children of parent
+	private static Map<String, String> sets(Element parent) {
+		Map<String, String> sets = new HashMap<String, String>();
+		for (Element set: children(parent, "set")) {
+			for (int i = 0; i < set.getAttributes().getLength(); i++) {
+				sets.put(set.getAttributes().item(i).getNodeName(), set.getAttributes().item(i).getNodeValue());
+			}
+		}
+		return sets;
+	}
+
+	/*
+	 * an agent of the agents file: its class and its properties
+	 */
+	static class Entry {
+		final String name;
+		final Map<String, String> properties;
+		private Class<?> behaviorClass;
+
+		Entry(String name, Map<String, String> properties) {
+			this.name = name;
+			this.properties = properties;
+		}
+
+		// the same agent with some of its properties changed, named name
+		Entry with(String name, Map<String, String> changes) {
+			Map<String, String> properties = new HashMap<String, String>(this.properties);
+			properties.putAll(changes);
+			Entry entry = new Entry(name, properties);
+			entry.behaviorClass = behaviorClass;
+			return entry;
+		}
+
+		// loads the class like the platform does, once for all the games
+		synchronized Class<?> behaviorClass() throws Exception {
+			if (behaviorClass == null) {
+				ClassLoader loader = getClass().getClassLoader();
+				if (properties.containsKey("class-path")) {
+					loader = XMLTag.convert(properties.get("class-path"), "agent", ClassLoader.class);
+				}
+				behaviorClass = loader.loadClass(properties.get("class-name"));
+			}
+			return behaviorClass;
+		}
+	}
+
+	/*
+	 * a vehicle of the configuration
+	 */
+	private static class VehicleSpec {
+		final int id, capacity, costPerKm;
+		final String name;
+		final City home;
+		final double speed;
+		final Color color;
+
+		VehicleSpec(int id, String name, City home, int capacity, int costPerKm, double speed, Color color) {
+			this.id = id;
+			this.name = name;
+			this.home = home;
+			this.capacity = capacity;
+			this.costPerKm = costPerKm;
+			this.speed = speed;
+			this.color = color;
+		}
+	}
+
+	/*
+	 * a vehicle at home without any task, as the agents see them before they plan
+	 */
+	private static class SimulatedVehicle implements Vehicle {
+		private final VehicleSpec spec;
+		private final TaskSet universe;
+
+		SimulatedVehicle(VehicleSpec spec, TaskSet universe) {
+			this.spec = spec;
+			this.universe = universe;
+		}
+
+		public int id() { return spec.id; }
+		public String name() { return spec.name; }
+		public int capacity() { return spec.capacity; }
+		public City homeCity() { return spec.home; }
+		public double speed() { return spec.speed; }
+		public int costPerKm() { return spec.costPerKm; }
+		public City getCurrentCity() { return spec.home; }
+		public TaskSet getCurrentTasks() { return TaskSet.noneOf(universe); }  // a new one, the PlanVerifier changes it
+		public long getReward() { return 0; }
+		public long getDistanceUnits() { return 0; }
+		public double getDistance() { return 0; }
+		public Color color() { return spec.color; }
+	}
+}
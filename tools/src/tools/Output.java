@@ -0,0 +1,23 @@
+package tools;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/*
+ * The agents print what they do at every call, the tools and the benchmarks that run them many times silence them
+ */
+public final class Output {
+	private Output() {}
+
+	// replaces System.out by a stream that drops everything, return the stream it replaced
+	public static PrintStream silence() {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		}));
+		return out;
+	}
+}
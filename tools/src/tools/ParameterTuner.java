@@ -0,0 +1,533 @@
+package tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.w3c.dom.Element;
+
+import logist.LogistSettings.TimeoutKey;
+import logist.behavior.AuctionBehavior;
+import logist.behavior.CentralizedBehavior;
+import logist.plan.Plan;
+import logist.task.DefaultTaskDistribution;
+import logist.task.Task;
+import logist.task.TaskSet;
+import tools.Configuration.Entry;
+
+/*
+ * Tunes the properties of an agent (the temperatures of the simulated annealing, the bid gains, ...) for each topology
+ * and timeouts of a tuning file, by iterated racing like irace does:
+ * - a race evaluates its candidates (sets of values of the properties) on one instance after the other and, from the
+ *   FIRST_TEST-th instance on, drops the candidates that are worse than the best one according to a paired t-test
+ * - the candidates that survive a race are the elites of the next one, whose new candidates are sampled around them
+ *   with a spread that shrinks from race to race. The first race starts from the values of the agent.
+ * An instance is a seed of the task distribution. The score of an auction agent on an instance is its profit minus
+ * the one of the opponent over the two games on those tasks (one bidding first, the other one second), the score of
+ * a centralized agent is minus the cost of its plan. The games are played in this JVM like AuctionSimulator does,
+ * evaluations run in parallel on -parallel threads, so keep them to the half of the cores at most for the timeouts to
+ * mean what they mean in a tournament.
+ *
+ * The tuning file (see auction/config/tuning.xml) gives the agent, the configuration, the budget (the number of
+ * evaluations per topology and timeouts) and the properties to tune. The best agent of every topology and timeouts is
+ * written in tuning/<topology>-<timeouts>.xml as an agents file, the candidates of every race in tuning/results.csv.
+ *
+ * usage: ParameterTuner tuning.xml [-parallel n], run from the directory of the agents (auction/ or centralized/)
+ */
+public class ParameterTuner {
+	private static final int FIRST_TEST = 5; // no candidate is dropped before it ran on that many instances
+	private static final int NBR_ELITES = 3;
+	private static final double PENALTY = 1e7; // score of an evaluation in which the agent failed
+	// quantiles 0.95 of the Student distribution for 1 to 30 degrees of freedom
+	private static final double[] T_95 = { 6.314, 2.920, 2.353, 2.132, 2.015, 1.943, 1.895, 1.860, 1.833, 1.812,
+			1.796, 1.782, 1.771, 1.761, 1.753, 1.746, 1.740, 1.734, 1.729, 1.725, 1.721, 1.717, 1.714, 1.711, 1.708,
+			1.706, 1.703, 1.701, 1.699, 1.697 };
+
+	private final Element tuning;
+	private final File directory = new File("tuning");
+	private final List<Parameter> parameters = new ArrayList<Parameter>();
+	private final int budget, nbrRaces, parallel;
+	private final long seed;
+	private final PrintStream log;
+
+	ParameterTuner(File tuningFile, int parallel, PrintStream log) throws Exception {
+		tuning = Configuration.parse(tuningFile);
+		for (Element parameter: Configuration.children(tuning, "parameter")) {
+			parameters.add(new Parameter(parameter));
+		}
+		if (parameters.isEmpty()) {
+			throw new IllegalArgumentException("No parameter to tune in " + tuningFile);
+		}
+		budget = Integer.parseInt(attribute(tuning, "budget", "200"));
+		// irace's default number of races
+		nbrRaces = Integer.parseInt(attribute(tuning, "races",
+				Integer.toString(2 + (int) (Math.log(parameters.size()) / Math.log(2)))));
+		seed = Long.parseLong(attribute(tuning, "seed", "1"));
+		this.parallel = parallel;
+		this.log = log;
+		directory.mkdirs();
+	}
+
+	// tunes the agent for every topology and timeouts of the tuning file
+	void tune() throws Exception {
+		for (Element topology: Configuration.children(tuning, "topology")) {
+			for (Element timeouts: Configuration.children(tuning, "timeouts")) {
+				String name = new File(topology.getAttribute("import")).getName().replaceFirst("\\.xml$", "") + "-"
+						+ attribute(timeouts, "name", timeouts.getAttribute("setup") + "-" + timeouts.getAttribute("bid")
+								+ "-" + timeouts.getAttribute("plan"));
+				new Target(name, topology.getAttribute("import"), timeouts).tune();
+			}
+		}
+	}
+
+	/*
+	 * a topology and timeouts, played with a copy of the configuration and of its settings
+	 */
+	private class Target {
+		final String name;
+		final Configuration configuration;
+		final AuctionSimulator simulator;
+		final Entry base, opponent; // opponent is null for a centralized agent
+		final Random random;
+		final List<Candidate> candidates = new ArrayList<Candidate>();
+		int evaluations = 0;
+
+		Target(String name, String topologyPath, Element timeouts) throws Exception {
+			this.name = name;
+			File targets = new File(directory, "targets");
+			targets.mkdirs();
+			String config = read(new File(tuning.getAttribute("config")));
+			Matcher settingsImport = Pattern.compile("<settings\\s+import=\"([^\"]*)\"").matcher(config);
+			if (!settingsImport.find()) {
+				throw new IllegalArgumentException(tuning.getAttribute("config") + " imports no settings");
+			}
+			String settings = read(new File(settingsImport.group(1)));
+			for (String key: new String[] { "setup", "bid", "plan" }) {
+				if (timeouts.hasAttribute(key)) {
+					settings = settings.replaceAll("<set\\s+timeout-" + key + "=\"[^\"]*\"",
+							"<set timeout-" + key + "=\"" + timeouts.getAttribute(key) + "\"");
+				}
+			}
+			File settingsCopy = new File(targets, "settings-" + name + ".xml");
+			write(settingsCopy, settings);
+			config = config.replaceFirst("<settings\\s+import=\"[^\"]*\"",
+					"<settings import=\"" + settingsCopy.getPath().replace('\\', '/') + "\"");
+			config = config.replaceFirst("<topology\\s+import=\"[^\"]*\"", "<topology import=\"" + topologyPath + "\"");
+			if (tuning.hasAttribute("tasks")) {
+				config = config.replaceFirst("<tasks\\s+number=\"[^\"]*\"", "<tasks number=\"" + tuning.getAttribute("tasks") + "\"");
+			}
+			File configCopy = new File(targets, "config-" + name + ".xml");
+			write(configCopy, config);
+
+			configuration = new Configuration(configCopy, tuning.hasAttribute("agents") ? new File(tuning.getAttribute("agents"))
+					: null, null);
+			simulator = new AuctionSimulator(configuration);
+			base = configuration.entry(tuning.getAttribute("agent"));
+			if (AuctionBehavior.class.isAssignableFrom(base.behaviorClass())) {
+				opponent = configuration.entry(tuning.getAttribute("opponent"));
+			} else if (CentralizedBehavior.class.isAssignableFrom(base.behaviorClass())) {
+				opponent = null;
+			} else {
+				throw new IllegalArgumentException(base.name + " is neither an auction nor a centralized agent");
+			}
+			random = new Random(seed);
+		}
+
+		void tune() throws Exception {
+			log.println(name + ": tuning " + base.name + " with " + budget + " evaluations in " + nbrRaces + " races");
+			List<Candidate> elites = new ArrayList<Candidate>();
+			for (int race = 0; race < nbrRaces && evaluations < budget; race++) {
+				int raceBudget = (budget - evaluations) / (nbrRaces - race);
+				int nbrCandidates = Math.max(NBR_ELITES + 1, raceBudget / (FIRST_TEST + Math.min(5, race)));
+				List<Candidate> alive = new ArrayList<Candidate>(elites);
+				if (race == 0) {
+					alive.add(newCandidate(new HashMap<String, String>(), race));  // the values of the agent
+				}
+				double spread = 0.3 * Math.pow(0.5, race);
+				while (alive.size() < nbrCandidates) {
+					Map<String, String> values = new HashMap<String, String>();
+					Candidate parent = elites.isEmpty() ? null : elites.get(rankedIndex(elites.size()));
+					for (Parameter parameter: parameters) {
+						String value = (parent == null) ? parameter.sample(random)
+								: parameter.sampleAround(parent.value(parameter, base), spread, random);
+						values.put(parameter.name, value);
+					}
+					alive.add(newCandidate(values, race));
+				}
+				elites = race(alive, evaluations + raceBudget);
+				log.println(String.format(Locale.ROOT, "%s: race %d, %d evaluations, best %s with %.1f on %d instances",
+						name, race, evaluations, elites.get(0).entry.name, elites.get(0).mean(), elites.get(0).scores.size()));
+			}
+			writeResults(elites.get(0));
+		}
+
+		// a new candidate, the properties it doesn't change keep the values of the agent
+		private Candidate newCandidate(Map<String, String> values, int race) {
+			Candidate candidate = new Candidate(base.with(base.name + "-c" + candidates.size(), values), values, race);
+			candidates.add(candidate);
+			return candidate;
+		}
+
+		// the index of a parent among the elites sorted by score, the better the more likely
+		private int rankedIndex(int size) {
+			int total = size * (size + 1) / 2;
+			int draw = random.nextInt(total);
+			for (int i = 0; i < size; i++) {
+				draw -= size - i;
+				if (draw < 0) {
+					return i;
+				}
+			}
+			return 0;
+		}
+
+		/*
+		 * races the candidates until evaluations reaches maxEvaluations or one is left, return the survivors sorted by
+		 * score (at most NBR_ELITES of them). The candidates keep the scores they got in the previous races, on the same
+		 * instances
+		 */
+		private List<Candidate> race(List<Candidate> alive, int maxEvaluations) throws Exception {
+			int instance = 0;
+			while (alive.size() > 1) {
+				List<Candidate> toEvaluate = new ArrayList<Candidate>();
+				for (Candidate candidate: alive) {
+					if (candidate.scores.size() <= instance) {
+						toEvaluate.add(candidate);
+					}
+				}
+				if (evaluations + toEvaluate.size() > maxEvaluations) {
+					break;
+				}
+				evaluate(toEvaluate, instance);
+				instance++;
+				if (instance >= FIRST_TEST) {
+					alive = eliminate(alive, instance);
+				}
+			}
+			final int nbrInstances = instance;
+			Collections.sort(alive, new Comparator<Candidate>() {
+				@Override
+				public int compare(Candidate c1, Candidate c2) {
+					return Double.compare(c2.mean(nbrInstances), c1.mean(nbrInstances));
+				}
+			});
+			for (Candidate candidate: alive) {
+				candidate.survived++;
+			}
+			return new ArrayList<Candidate>(alive.subList(0, Math.min(NBR_ELITES, alive.size())));
+		}
+
+		// evaluates the candidates on instance on parallel threads
+		private void evaluate(List<Candidate> candidates, final int instance) throws Exception {
+			ExecutorService executor = Executors.newFixedThreadPool(parallel);
+			List<Future<Double>> results = new ArrayList<Future<Double>>();
+			for (final Candidate candidate: candidates) {
+				results.add(executor.submit(new Callable<Double>() {
+					@Override
+					public Double call() throws Exception {
+						return (opponent == null) ? planScore(candidate.entry, seed + instance)
+								: auctionScore(candidate.entry, seed + instance);
+					}
+				}));
+			}
+			executor.shutdown();
+			for (int i = 0; i < candidates.size(); i++) {
+				try {
+					candidates.get(i).scores.add(results.get(i).get());
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			evaluations += candidates.size();
+		}
+
+		/*
+		 * the candidates that aren't worse than the best one (the one with the best mean on the first nbrInstances
+		 * instances) according to a one-sided paired t-test at 95%
+		 */
+		private List<Candidate> eliminate(List<Candidate> alive, int nbrInstances) {
+			Candidate best = alive.get(0);
+			for (Candidate candidate: alive) {
+				if (candidate.mean(nbrInstances) > best.mean(nbrInstances)) {
+					best = candidate;
+				}
+			}
+			List<Candidate> survivors = new ArrayList<Candidate>();
+			int degrees = nbrInstances - 1;
+			double t95 = (degrees <= T_95.length) ? T_95[degrees - 1] : 1.645;
+			for (Candidate candidate: alive) {
+				double sum = 0, sumSquares = 0;
+				for (int i = 0; i < nbrInstances; i++) {
+					double difference = best.scores.get(i) - candidate.scores.get(i);
+					sum += difference;
+					sumSquares += difference * difference;
+				}
+				double mean = sum / nbrInstances;
+				double variance = (sumSquares - nbrInstances * mean * mean) / (nbrInstances - 1);
+				boolean worse = (variance <= 1e-9) ? mean > 0 : mean / Math.sqrt(variance / nbrInstances) > t95;
+				if (candidate == best || !worse) {
+					survivors.add(candidate);
+				}
+			}
+			return survivors;
+		}
+
+		// profit of the candidate minus the one of the opponent over the two games on the tasks of seed
+		private double auctionScore(Entry candidate, long seed) {
+			double score = 0;
+			for (int first = 0; first < 2; first++) {
+				AuctionSimulator.Game game = simulator.new Game(seed, (first == 0) ? candidate : opponent,
+						(first == 0) ? opponent : candidate);
+				game.play();
+				int index = game.indexOf(candidate);
+				if (game.failed == index) {
+					return -PENALTY;
+				}
+				score += game.profit[index] - game.profit[1 - index];
+			}
+			return score;
+		}
+
+		// minus the cost of the plan of the candidate for the tasks of seed, with the vehicles of the first company
+		private double planScore(Entry candidate, long seed) {
+			Random random = new Random(seed);
+			final DefaultTaskDistribution distribution = configuration.distribution(random);
+			final TaskSet tasks = distribution.createTaskSet(new Task[configuration.nbrTasks]);
+			final SimulatedAgent agent = new SimulatedAgent(0, candidate, configuration, configuration.vehicles(0, tasks), tasks);
+			final CentralizedBehavior[] behavior = new CentralizedBehavior[1];
+			try {
+				agent.call("setup", TimeoutKey.SETUP, new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						behavior[0] = agent.newBehavior(CentralizedBehavior.class);
+						behavior[0].setup(configuration.topology, distribution, agent);
+						return null;
+					}
+				});
+				List<Plan> plans = agent.call("plan", TimeoutKey.PLAN, new Callable<List<Plan>>() {
+					@Override
+					public List<Plan> call() {
+						List<Plan> plans = new ArrayList<Plan>(behavior[0].plan(agent.vehicles, tasks));
+						for (Plan plan: plans) {
+							plan.seal();
+						}
+						return plans;
+					}
+				});
+				return -agent.cost(plans);
+			} catch (Exception e) {
+				return -PENALTY;
+			} finally {
+				agent.close(behavior[0]);
+			}
+		}
+
+		// writes the best candidate as an agents file and the candidates of every race in results.csv
+		private void writeResults(Candidate best) throws IOException {
+			Map<String, String> properties = new TreeMap<String, String>(best.entry.properties);
+			StringBuilder agents = new StringBuilder();
+			agents.append("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n\n");
+			agents.append(String.format(Locale.ROOT, "<!-- %s tuned for %s: mean score %.1f on %d instances, %.1f for "
+					+ "the values of %s on the same instances -->\n", base.name, name, best.mean(), best.scores.size(),
+					candidates.get(0).mean(Math.min(best.scores.size(), candidates.get(0).scores.size())), base.name));
+			agents.append("<agents>\n\t<agent name=\"" + base.name + "-" + name + "\">\n");
+			for (String key: new String[] { "class-path", "class-name" }) {
+				if (properties.containsKey(key)) {
+					agents.append("\t\t<set " + key + "=\"" + properties.remove(key) + "\"/>\n");
+				}
+			}
+			for (Map.Entry<String, String> property: properties.entrySet()) {
+				agents.append("\t\t<set " + property.getKey() + "=\"" + property.getValue() + "\"/>\n");
+			}
+			agents.append("\t</agent>\n</agents>\n");
+			File file = new File(directory, name + ".xml");
+			write(file, agents.toString());
+
+			File csv = new File(directory, "results.csv");
+			boolean isNew = !csv.exists() || csv.length() == 0;
+			PrintWriter writer = new PrintWriter(new FileWriter(csv, true));
+			try {
+				if (isNew) {
+					writer.print("target,candidate,race,survived,instances,mean_score");
+					for (Parameter parameter: parameters) {
+						writer.print("," + parameter.name);
+					}
+					writer.println();
+				}
+				for (Candidate candidate: candidates) {
+					writer.print(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f", name, candidate.entry.name, candidate.race,
+							candidate.survived, candidate.scores.size(), candidate.mean()));
+					for (Parameter parameter: parameters) {
+						String value = candidate.value(parameter, base);
+						writer.print("," + ((value == null) ? "" : value));
+					}
+					writer.println();
+				}
+			} finally {
+				writer.close();
+			}
+			log.println(name + ": " + best.entry.name + " written in " + file);
+		}
+	}
+
+	/*
+	 * values of the tuned properties and the scores they got, one per instance
+	 */
+	private static class Candidate {
+		final Entry entry;
+		final Map<String, String> values;
+		final int race; // the race it was sampled for
+		final List<Double> scores = new ArrayList<Double>();
+		int survived = 0; // number of races it survived
+
+		Candidate(Entry entry, Map<String, String> values, int race) {
+			this.entry = entry;
+			this.values = values;
+			this.race = race;
+		}
+
+		// its value of the parameter, the one of the agent if it doesn't change it (null if the agent has none)
+		String value(Parameter parameter, Entry base) {
+			return values.containsKey(parameter.name) ? values.get(parameter.name) : base.properties.get(parameter.name);
+		}
+
+		double mean() {
+			return mean(scores.size());
+		}
+
+		// mean of the scores on the first n instances
+		double mean(int n) {
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += scores.get(i);
+			}
+			return (n == 0) ? Double.NEGATIVE_INFINITY : sum / n;
+		}
+	}
+
+	/*
+	 * a property to tune: a real or an integer in [min, max] (sampled in log scale if log is true), or one of values
+	 */
+	private static class Parameter {
+		final String name, type;
+		final double min, max;
+		final boolean log;
+		final String[] values;
+
+		Parameter(Element tag) {
+			name = tag.getAttribute("name");
+			type = attribute(tag, "type", "real");
+			if (type.equals("categorical")) {
+				values = tag.getAttribute("values").split("\\s*,\\s*");
+				min = max = 0;
+				log = false;
+			} else {
+				values = null;
+				min = Double.parseDouble(tag.getAttribute("min"));
+				max = Double.parseDouble(tag.getAttribute("max"));
+				log = Boolean.parseBoolean(attribute(tag, "log", "false"));
+				if (log && min <= 0) {
+					throw new IllegalArgumentException(name + " can't be sampled in log scale from " + min);
+				}
+			}
+		}
+
+		String sample(Random random) {
+			if (values != null) {
+				return values[random.nextInt(values.length)];
+			}
+			return format(fromUnit(random.nextDouble()));
+		}
+
+		/*
+		 * a value close to value: normal around it with a standard deviation of spread times the range for the numbers,
+		 * the same value with probability 1 - spread for the categories. Uniform if value is null
+		 */
+		String sampleAround(String value, double spread, Random random) {
+			if (value == null) {
+				return sample(random);
+			}
+			if (values != null) {
+				return (random.nextDouble() < spread) ? values[random.nextInt(values.length)] : value;
+			}
+			double unit = toUnit(Double.parseDouble(value)) + spread * random.nextGaussian();
+			return format(fromUnit(Math.max(0, Math.min(1, unit))));
+		}
+
+		// the position of x in the range, between 0 and 1
+		private double toUnit(double x) {
+			x = Math.max(min, Math.min(max, x));
+			if (log) {
+				return Math.log(x / min) / Math.log(max / min);
+			}
+			return (x - min) / (max - min);
+		}
+
+		private double fromUnit(double unit) {
+			if (log) {
+				return min * Math.pow(max / min, unit);
+			}
+			return min + unit * (max - min);
+		}
+
+		private String format(double x) {
+			if (type.equals("integer")) {
+				return Long.toString(Math.round(x));
+			}
+			return String.format(Locale.ROOT, "%.4g", x);
+		}
+	}
+
+	private static String attribute(Element tag, String name, String default_) {
+		return tag.hasAttribute(name) ? tag.getAttribute(name) : default_;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("usage: ParameterTuner tuning.xml [-parallel n]");
+			System.exit(1);
+		}
+		int parallel = 1;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-parallel") && i + 1 < args.length) {
+				parallel = Integer.parseInt(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		long start = System.currentTimeMillis();
+		PrintStream out = Output.silence();
+		new ParameterTuner(new File(args[0]), parallel, out).tune();
+		System.setOut(out);
+		System.out.println(String.format(Locale.ROOT, "tuned in %.1f s, results in tuning", (System.currentTimeMillis() - start) / 1000.));
+		System.exit(0);  // the threads of an agent that timed out may still be running
+	}
+}
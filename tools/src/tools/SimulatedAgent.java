@@ -0,0 +1,126 @@
+package tools;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import logist.LogistSettings.TimeoutKey;
+import logist.Measures;
+import logist.agent.Agent;
+import logist.agent.AgentStatistics;
+import logist.config.XMLTag;
+import logist.plan.Plan;
+import logist.plan.PlanVerifier;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+
+/*
+ * What the platform gives to the behavior of an agent in a game played in this JVM, and the calls to the behavior:
+ * each of them runs on the thread of the agent with the timeout of the settings, like the platform does. The agent
+ * is told the settings file of the configuration through its property "settings".
+ */
+class SimulatedAgent implements Agent {
+	final Configuration.Entry entry;
+	final List<Vehicle> vehicles;
+	final TaskSet tasks; // the tasks of the agent (the tasks won so far in an auction)
+	private final int id;
+	private final Configuration configuration;
+	private final Map<String, String> properties;
+	private final ExecutorService executor;
+
+	SimulatedAgent(int id, Configuration.Entry entry, Configuration configuration, List<Vehicle> vehicles, TaskSet tasks) {
+		this.id = id;
+		this.entry = entry;
+		this.configuration = configuration;
+		this.vehicles = vehicles;
+		this.tasks = tasks;
+		properties = new HashMap<String, String>(entry.properties);
+		properties.put("settings", configuration.settingsPath);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "simulated-" + SimulatedAgent.this.entry.name);
+				thread.setDaemon(true);  // a behavior that doesn't return must not keep the JVM alive
+				return thread;
+			}
+		});
+	}
+
+	// a new instance of the behavior of the agent
+	<T> T newBehavior(Class<T> type) throws Exception {
+		return entry.behaviorClass().asSubclass(type).newInstance();
+	}
+
+	// calls callable on the thread of the agent, with the timeout of key
+	<T> T call(String method, TimeoutKey key, Callable<T> callable) throws Exception {
+		Future<T> result = executor.submit(callable);
+		try {
+			return result.get(configuration.settings.get(key), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			throw new Exception(entry.name + " timed out in " + method);
+		} catch (ExecutionException e) {
+			throw new Exception(entry.name + " crashed in " + method + ": " + e.getCause(), e.getCause());
+		}
+	}
+
+	// checks the plans of the agent for its tasks like the platform does and return their cost
+	long cost(List<Plan> plans) {
+		if (plans.size() != vehicles.size()) {
+			throw new IllegalStateException(entry.name + " returned " + plans.size() + " plans for " + vehicles.size()
+					+ " vehicles");
+		}
+		PlanVerifier verifier = new PlanVerifier(configuration.topology, tasks);
+		long costUnits = 0;
+		for (int i = 0; i < plans.size(); i++) {
+			verifier.verifyPlan(vehicles.get(i), plans.get(i));
+			verifier.verifyDelivery();
+			costUnits += plans.get(i).totalDistanceUnits() * vehicles.get(i).costPerKm();
+		}
+		verifier.verifyPickup();
+		return Math.round(Measures.unitsToKM(costUnits));
+	}
+
+	// stops the thread of the agent and the ones of behavior if it can
+	void close(Object behavior) {
+		if (behavior instanceof Closeable) {
+			try {
+				((Closeable) behavior).close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		executor.shutdownNow();
+	}
+
+	public int id() { return id; }
+	public String name() { return entry.name; }
+	public List<Vehicle> vehicles() { return vehicles; }
+	public TaskSet getTasks() { return tasks; }
+
+	public <T> T readProperty(String paramName, Class<T> clazz, T default_) {
+		try {
+			return XMLTag.convert(properties, paramName, "agent", clazz, default_);
+		} catch (Exception e) {
+			throw new RuntimeException("parameter conversion failed", e);
+		}
+	}
+
+	// the statistics of the simulation, nothing is delivered in these games
+	public long getTotalDistanceUnits() { return 0; }
+	public double getTotalDistance() { return 0; }
+	public long getTotalCost() { return 0; }
+	public long getTotalReward() { return 0; }
+	public long getTotalProfit() { return 0; }
+	public int getTotalTasks() { return 0; }
+	public int compareTo(AgentStatistics other) { return 0; }
+}
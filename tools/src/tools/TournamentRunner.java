@@ -0,0 +1,458 @@
+package tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import logist.agent.AgentStatistics;
+import logist.config.Parsers;
+
+/*
+ * Runs a round-robin tournament between the agents of the jars of a directory like logist.jar -new/-run/-score does,
+ * but plays the matches concurrently: every match is a logist platform in its own process, without UI, and gets its
+ * own share of the cores so the timeouts of the agents mean the same thing in every match:
+ * - the cores are split in slots of cpus cores, one match runs per slot at a time, pinned to the cores of its slot
+ *   with taskset when it exists and told it has cpus cores (-XX:ActiveProcessorCount) so the agents size their
+ *   thread pools accordingly, -parallel is lowered to the number of slots that fit in the cores
+ * - the settings imported by every template are copied with flag-show-ui set to false
+ * - with -cds file, the platforms share the classes the JVM loaded and parsed in an archive (class data sharing,
+ *   Java 13 or later): the first match is played alone and writes it when it doesn't exist yet, the other ones map
+ *   it and start faster. The archive holds the classes loaded from the class path (the JDK and logist), the agents are
+ *   loaded from their jar by logist and still warm up in their setup
+ * A match whose history file is complete is never played again, so running the same tournament again resumes it.
+ * The results of all the matches played so far are written in the tournament directory: matches.csv (one line per
+ * match), summary.json (the ranking) and results.txt (the ranking, readable).
+ *
+ * usage: TournamentRunner name template [-agents dir] [-cpus n] [-parallel n] [-timeout minutes] [-jvm "options"]
+ *        [-cds file]
+ * template is a configuration file or a directory of configuration files, the tournament is in tournament/name
+ */
+public class TournamentRunner {
+	private static final String LOGIST_JAR = "logist" + File.separator + "logist.jar";
+
+	private final File tournamentDir;
+	private final List<File> templates = new ArrayList<File>();
+	private final List<Match> matches = new ArrayList<Match>();
+	private final int cpusPerMatch, nbrSlots;
+	private final long timeout; // in ms, a match still running after it is killed
+	private final String jvmOptions;
+	private final File classArchive; // null unless the platforms share their classes, see above
+	private final boolean pin;
+	private final List<Process> running = new ArrayList<Process>(); // the matches being played
+
+	TournamentRunner(File tournamentDir, File template, int cpusPerMatch, int nbrSlots, long timeout, String jvmOptions,
+			File classArchive) throws Exception {
+		this.tournamentDir = tournamentDir;
+		this.cpusPerMatch = cpusPerMatch;
+		this.nbrSlots = nbrSlots;
+		this.timeout = timeout;
+		this.jvmOptions = jvmOptions;
+		this.classArchive = classArchive;
+		pin = new File("/usr/bin/taskset").canExecute() || new File("/bin/taskset").canExecute();
+
+		if (template.isDirectory()) {
+			for (File file: template.listFiles()) {
+				if (file.isFile() && file.getName().endsWith(".xml")) {
+					templates.add(file);
+				}
+			}
+			Collections.sort(templates);
+		} else {
+			templates.add(template);
+		}
+
+		List<String> agents = Parsers.parseAgents(new File(tournamentDir, "agents.xml"));
+		for (File file: templates) {
+			File headless = headlessTemplate(file);
+			String name = file.getName().substring(0, file.getName().length() - 4);
+			for (String agent1: agents) {  // every agent plays both sides against every other one
+				for (String agent2: agents) {
+					if (!agent1.equals(agent2)) {
+						matches.add(new Match(name, headless, agent1, agent2));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * copy of template (in the directory headless of the tournament) whose settings have flag-show-ui set to false, the
+	 * paths it imports stay relative to the working directory
+	 */
+	private File headlessTemplate(File template) throws IOException {
+		File directory = new File(tournamentDir, "headless");
+		directory.mkdirs();
+		String config = read(template);
+		File headlessSettings = new File(directory, "settings-" + template.getName());
+		String settingsPath = headlessSettings.getPath().replace('\\', '/');
+		Matcher settingsImport = Pattern.compile("<settings\\s+import=\"([^\"]*)\"").matcher(config);
+		String settings;
+		if (settingsImport.find()) {
+			settings = read(new File(settingsImport.group(1)));
+			config = config.substring(0, settingsImport.start(1)) + settingsPath + config.substring(settingsImport.end(1));
+		} else {  // the default settings show the UI
+			settings = "<settings name=\"headless\">\n</settings>\n";
+			config = config.replaceFirst("(<configuration[^>]*>)", "$1\n\t<settings import=\"" + settingsPath + "\" />");
+		}
+		settings = settings.replaceAll("<set\\s+flag-show-ui=\"[^\"]*\"\\s*/>", "");
+		settings = settings.replaceFirst("</settings>", "\t<set flag-show-ui=\"false\" />\n</settings>");
+		write(headlessSettings, settings);
+		File headless = new File(directory, template.getName());
+		write(headless, config);
+		return headless;
+	}
+
+	// plays every match that isn't complete yet, return the number of matches that failed
+	int play() throws InterruptedException {
+		final BlockingQueue<Integer> freeSlots = new ArrayBlockingQueue<Integer>(nbrSlots);
+		for (int slot = 0; slot < nbrSlots; slot++) {
+			freeSlots.add(slot);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(nbrSlots);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		List<Match> toPlay = new ArrayList<Match>();
+		for (Match match: matches) {
+			if (!match.readResult()) {  // otherwise played in a previous run
+				toPlay.add(match);
+			}
+		}
+		System.out.println(toPlay.size() + " of " + matches.size() + " matches to play on " + nbrSlots + " slots of "
+				+ cpusPerMatch + " cores" + (pin ? " (pinned)" : ""));
+		if (classArchive != null && !classArchive.isFile() && !toPlay.isEmpty()) {
+			// the archive is written when the platform exits, the other matches wait for it
+			try {
+				toPlay.remove(0).play(0, true);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		for (final Match match: toPlay) {
+			results.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					Integer slot = null;
+					try {
+						slot = freeSlots.take();
+						match.play(slot, false);
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						if (slot != null) {
+							freeSlots.add(slot);
+						}
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+		for (Future<?> result: results) {
+			try {
+				result.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		int failed = 0;
+		for (Match match: matches) {
+			if (match.ranking == null) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	// kills the matches being played, their history is incomplete so they will be played again
+	void stop() {
+		synchronized (running) {
+			for (Process process: running) {
+				process.destroy();
+			}
+		}
+	}
+
+	/*
+	 * a game between two agents on a template, its history file is named like the ones of logist.jar -run
+	 */
+	private class Match {
+		final String template, agent1, agent2;
+		final File config, history, log;
+		List<AgentStatistics> ranking; // the statistics of both agents, the winner first, null until it was played
+		String status = "not played";
+
+		Match(String template, File config, String agent1, String agent2) {
+			this.template = template;
+			this.config = config;
+			this.agent1 = agent1;
+			this.agent2 = agent2;
+			String name = template + "-" + agent1 + "-" + agent2;
+			history = new File(tournamentDir, name + ".xml");
+			log = new File(new File(tournamentDir, "logs"), name + ".log");
+		}
+
+		// reads the result from the history file, return false if there is no complete history
+		boolean readResult() {
+			if (!history.isFile() || history.length() == 0) {
+				return false;
+			}
+			try {
+				List<AgentStatistics> statistics = Parsers.parseHistory(history);
+				if (statistics.size() == 2) {
+					ranking = statistics;
+					status = "played";
+					return true;
+				}
+			} catch (Exception e) {
+				// the history was cut by a crash or a kill
+			}
+			return false;
+		}
+
+		// plays the match on the cores of slot, writing the class archive when dumpArchive
+		void play(int slot, boolean dumpArchive) throws IOException, InterruptedException {
+			history.delete();
+			log.getParentFile().mkdirs();
+			List<String> command = new ArrayList<String>();
+			if (pin) {
+				int first = slot * cpusPerMatch;  // the slots never go over the cores, see main
+				command.add("taskset");
+				command.add("-c");
+				command.add(first + "-" + (first + cpusPerMatch - 1));
+			}
+			command.add(java());
+			command.add("-XX:ActiveProcessorCount=" + cpusPerMatch);
+			for (String option: jvmOptions.trim().split("\\s+")) {
+				if (!option.isEmpty()) {
+					command.add(option);
+				}
+			}
+			if (dumpArchive) {
+				command.add("-XX:ArchiveClassesAtExit=" + classArchive.getPath());
+			} else if (classArchive != null && classArchive.isFile()) {
+				command.add("-XX:SharedArchiveFile=" + classArchive.getPath());
+			}
+			Collections.addAll(command, "-classpath", LOGIST_JAR, "logist.LogistPlatform", "-o", history.getPath(),
+					"-a", new File(tournamentDir, "agents.xml").getPath(), config.getPath(), agent1, agent2);
+
+			long start = System.currentTimeMillis();
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+			synchronized (running) {
+				running.add(process);
+			}
+			boolean killed = false;
+			while (true) {
+				try {
+					process.exitValue();
+					break;
+				} catch (IllegalThreadStateException e) {
+					if (System.currentTimeMillis() - start > timeout) {
+						process.destroy();
+						killed = true;
+						process.waitFor();
+						break;
+					}
+					Thread.sleep(200);
+				}
+			}
+			synchronized (running) {
+				running.remove(process);
+			}
+			if (readResult()) {
+				long profit1 = profit(agent1), profit2 = profit(agent2);
+				String result = (profit1 == profit2) ? "draw" : "won by " + ((profit1 > profit2) ? agent1 : agent2);
+				System.out.println(String.format(Locale.ROOT, "%s: %s vs %s, %s (%d to %d) in %d s", template, agent1,
+						agent2, result, profit1, profit2, (System.currentTimeMillis() - start) / 1000));
+			} else {
+				status = killed ? "timeout" : "crash";
+				System.out.println(template + ": " + agent1 + " vs " + agent2 + " failed (" + status + "), see " + log);
+			}
+		}
+
+		// profit of agent in this match
+		long profit(String agent) {
+			for (AgentStatistics statistics: ranking) {
+				if (statistics.name().equals(agent)) {
+					return statistics.getTotalProfit();
+				}
+			}
+			return 0;
+		}
+	}
+
+	/*
+	 * totals of an agent over the matches it played
+	 */
+	private static class Standing {
+		final String agent;
+		int played, wins, draws, losses, failed;
+		long profit;
+
+		Standing(String agent) {
+			this.agent = agent;
+		}
+	}
+
+	// writes matches.csv, summary.json and results.txt in the tournament directory, return the readable ranking
+	String writeResults() throws IOException {
+		Map<String, Standing> standings = new LinkedHashMap<String, Standing>();
+		PrintWriter csv = new PrintWriter(new FileWriter(new File(tournamentDir, "matches.csv")));
+		csv.println("template,agent1,agent2,status,profit1,profit2,winner");
+		for (Match match: matches) {
+			for (String agent: new String[] { match.agent1, match.agent2 }) {
+				if (!standings.containsKey(agent)) {
+					standings.put(agent, new Standing(agent));
+				}
+			}
+			Standing standing1 = standings.get(match.agent1), standing2 = standings.get(match.agent2);
+			if (match.ranking == null) {
+				csv.println(match.template + "," + match.agent1 + "," + match.agent2 + "," + match.status + ",,,");
+				if (!match.status.equals("not played")) {
+					standing1.failed++;
+					standing2.failed++;
+				}
+				continue;
+			}
+			long profit1 = match.profit(match.agent1), profit2 = match.profit(match.agent2);
+			String winner = (profit1 == profit2) ? "" : (profit1 > profit2) ? match.agent1 : match.agent2;
+			csv.println(match.template + "," + match.agent1 + "," + match.agent2 + "," + match.status + "," + profit1 + ","
+					+ profit2 + "," + winner);
+			standing1.played++;
+			standing2.played++;
+			standing1.profit += profit1;
+			standing2.profit += profit2;
+			if (profit1 == profit2) {
+				standing1.draws++;
+				standing2.draws++;
+			} else {
+				Standing won = (profit1 > profit2) ? standing1 : standing2, lost = (profit1 > profit2) ? standing2 : standing1;
+				won.wins++;
+				lost.losses++;
+			}
+		}
+		csv.close();
+
+		List<Standing> ranking = new ArrayList<Standing>(standings.values());
+		Collections.sort(ranking, new Comparator<Standing>() {
+			@Override
+			public int compare(Standing s1, Standing s2) {  // most wins first, then the largest profit
+				if (s1.wins != s2.wins) {
+					return s2.wins - s1.wins;
+				}
+				return Long.compare(s2.profit, s1.profit);
+			}
+		});
+
+		StringBuilder json = new StringBuilder("{\n  \"matches\": " + matches.size() + ",\n  \"ranking\": [\n");
+		StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%-4s %-30s %6s %5s %5s %6s %6s %12s %12s%n",
+				"rank", "agent", "played", "wins", "draws", "losses", "failed", "profit", "mean profit"));
+		for (int i = 0; i < ranking.size(); i++) {
+			Standing s = ranking.get(i);
+			double meanProfit = (s.played == 0) ? 0 : (double) s.profit / s.played;
+			json.append(String.format(Locale.ROOT, "    {\"rank\": %d, \"agent\": \"%s\", \"played\": %d, \"wins\": %d, "
+					+ "\"draws\": %d, \"losses\": %d, \"failed\": %d, \"profit\": %d, \"meanProfit\": %.1f}%s%n",
+					i + 1, s.agent.replace("\\", "\\\\").replace("\"", "\\\""), s.played, s.wins, s.draws, s.losses,
+					s.failed, s.profit, meanProfit, (i + 1 < ranking.size()) ? "," : ""));
+			text.append(String.format(Locale.ROOT, "%-4d %-30s %6d %5d %5d %6d %6d %12d %12.1f%n", i + 1, s.agent,
+					s.played, s.wins, s.draws, s.losses, s.failed, s.profit, meanProfit));
+		}
+		json.append("  ]\n}\n");
+		write(new File(tournamentDir, "summary.json"), json.toString());
+		write(new File(tournamentDir, "results.txt"), text.toString());
+		return text.toString();
+	}
+
+	// the java executable we run with
+	private static String java() {
+		return new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: TournamentRunner name template [-agents dir] [-cpus n] [-parallel n] "
+					+ "[-timeout minutes] [-jvm \"options\"] [-cds file]");
+			System.exit(1);
+		}
+		File agentsDir = new File("agents");
+		int cpus = 1, parallel = -1;
+		long timeoutMinutes = 60;
+		String jvmOptions = "-Xmx1024m";
+		File classArchive = null;
+		for (int i = 2; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-agents")) {
+				agentsDir = new File(args[i + 1]);
+			} else if (args[i].equals("-cpus")) {
+				cpus = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-parallel")) {
+				parallel = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-timeout")) {
+				timeoutMinutes = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-jvm")) {
+				jvmOptions = args[i + 1];
+			} else if (args[i].equals("-cds")) {
+				classArchive = new File(args[i + 1]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		cpus = Math.max(1, Math.min(cpus, cores));
+		if (parallel <= 0) {
+			parallel = Math.max(1, cores / cpus);
+		} else if (parallel * cpus > cores) {  // the slots would share cores or be pinned to cores that don't exist
+			System.out.println("-parallel " + parallel + " needs " + parallel * cpus + " cores, " + cores
+					+ " are available: " + Math.max(1, cores / cpus) + " matches are played at a time");
+			parallel = Math.max(1, cores / cpus);
+		}
+
+		File tournamentDir = new File("tournament", args[0]);
+		if (!new File(tournamentDir, "agents.xml").isFile()) {  // a new tournament, logist writes the list of agents
+			Process process = new ProcessBuilder(java(), "-jar", LOGIST_JAR, "-new", args[0], agentsDir.getPath())
+					.inheritIO().start();
+			if (process.waitFor() != 0) {
+				throw new IllegalStateException("Could not create the tournament " + args[0]);
+			}
+		}
+
+		final TournamentRunner runner = new TournamentRunner(tournamentDir, new File(args[1]), cpus, parallel,
+				TimeUnit.MINUTES.toMillis(timeoutMinutes), jvmOptions, classArchive);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				runner.stop();  // the platforms must not outlive us
+			}
+		});
+		int failed = runner.play();
+		System.out.println();
+		System.out.print(runner.writeResults());
+		if (failed > 0) {
+			System.out.println(failed + " matches failed, run the tournament again to retry them");
+		}
+	}
+}